@@ -258,6 +258,13 @@ def generate_data(velocities, initial_heights_ratios):
                            trajectory, end_state)
 
 
+def generate_data_in_process(velocities, number_of_heights_per_velocity):
+    speeds = ','.join(map(str, velocities))
+    cmd = f"java -DinitialSpeeds={speeds} -DheightsPerSpeed={number_of_heights_per_velocity} -DoutputFileName=./output_files/ej2_2.txt -cp ./target/molecular-dynamics-ode-simulations-1.0-SNAPSHOT.jar ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.Ensemble"
+    print(cmd)
+    os.system(cmd)
+
+
 def main():
     velocities = np.linspace(5e3, 5e4, 5)
     mean_trajectories = []
@@ -266,6 +273,7 @@ def main():
     initial_height_ratios = np.linspace(0, 1, number_of_heights_per_velocity)
 
     # generate_data(velocities, initial_height_ratios)
+    # generate_data_in_process(velocities, number_of_heights_per_velocity)
 
     mean_trajectories, stdev_trajectories, absorbed, escaped_left, escaped_right, escaped_bottom, escaped_top, absorbed_trajectories_by_velocity, top_trajectories_per_velocity = read_file_data(
         number_of_heights_per_velocity)
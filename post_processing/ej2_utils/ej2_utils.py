@@ -1,8 +1,10 @@
+import numpy as np
 from matplotlib import pyplot as plt
 
 
 MATTER_FILE_NAME = "matter.txt"
 DYNAMIC_FILE_NAME = "dynamic.txt"
+BINARY_DYNAMIC_FILE_NAME = "dynamic.bin"
 STATIC_FILE_NAME = "static.txt"
 
 PARTICLE_XYZ_MOVEMENT_FILE_NAME = "particle_movement.xyz"
@@ -34,10 +36,38 @@ def parse_static_parameters():
                 static_parameters["step_size"] = float(line.split()[0])
             elif line_number == 8:
                 static_parameters["save_frequency"] = float(line.split()[0])
+            elif line_number == 9:
+                static_parameters["seed"] = int(line.split()[0])
 
     return static_parameters
 
 
+# must match BinaryTrajectoryWriter
+BINARY_TRAJECTORY_MAGIC = 0x4d445452
+BINARY_TRAJECTORY_HEADER = np.dtype([
+    ("magic", "<i4"), ("version", "<i4"), ("header_size", "<i4"),
+    ("particles_per_row", "<i4"), ("save_frequency", "<i4"), ("padding", "<i4"),
+    ("distance_between_particles", "<f8"), ("box_height", "<f8"), ("box_width", "<f8"),
+    ("initial_height", "<f8"), ("initial_speed", "<f8"), ("mass", "<f8"),
+    ("charge", "<f8"), ("step_size", "<f8"),
+])
+
+
+def read_binary_trajectory(file_name=BINARY_DYNAMIC_FILE_NAME):
+    """Returns the static parameters and a read-only (steps, 5) memmap of x y vx vy potential_energy."""
+    header = np.fromfile(file_name, dtype=BINARY_TRAJECTORY_HEADER, count=1)[0]
+
+    if header["magic"] != BINARY_TRAJECTORY_MAGIC:
+        raise ValueError(f"{file_name} is not a binary trajectory file")
+
+    static_parameters = {name: header[name].item() for name in BINARY_TRAJECTORY_HEADER.names
+                         if name not in ("magic", "version", "header_size", "padding")}
+
+    trajectory = np.memmap(file_name, dtype="<f8", mode="r", offset=int(header["header_size"]))
+
+    return static_parameters, trajectory.reshape(-1, 5)
+
+
 def parse_simulation_output():
 
     static_parameters = parse_static_parameters()
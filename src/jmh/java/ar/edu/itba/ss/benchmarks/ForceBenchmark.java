@@ -0,0 +1,71 @@
+package ar.edu.itba.ss.benchmarks;
+
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.ForceProvider;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.ForceProviders;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.MatterParticles;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.Particle;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.Vector2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// scores are per force evaluation against the whole lattice
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ForceBenchmark {
+    private static final int POSITIONS = 64;
+    private static final double CHARGE = Math.pow(10, -19);
+    private static final double MASS = Math.pow(10, -27);
+    private static final double DISTANCE = Math.pow(10, -8);
+
+    @Param({"16", "64", "256", "1024"})
+    public int particlesPerRow;
+
+    @Param({"direct"})
+    public String forceMode;
+
+    private MatterParticles matterParticles;
+    private ForceProvider forceProvider;
+    private double[] xs;
+    private double[] ys;
+    private double[] force;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        matterParticles = new MatterParticles(particlesPerRow, DISTANCE, CHARGE, MASS);
+        forceProvider = ForceProviders.create(forceMode, matterParticles);
+        force = new double[2];
+
+        // points inside the lattice, kept away from the sites themselves
+        SplittableRandom random = new SplittableRandom(particlesPerRow);
+        xs = new double[POSITIONS];
+        ys = new double[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = DISTANCE * (random.nextInt(particlesPerRow - 1) + 0.25 + 0.5 * random.nextDouble());
+            ys[i] = DISTANCE * (random.nextInt(particlesPerRow - 1) + 0.25 + 0.5 * random.nextDouble());
+        }
+    }
+
+    private int nextPosition() {
+        next = (next + 1) & (POSITIONS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public double forceAndPotential() {
+        int i = nextPosition();
+        return forceProvider.getTotalElectrostaticForceAndPotential(xs[i], ys[i], CHARGE, force);
+    }
+
+    @Benchmark
+    public Vector2D particleForce() {
+        int i = nextPosition();
+        return matterParticles.getTotalElectrostaticForce(new Particle(xs[i], ys[i], 0, 0, MASS, CHARGE));
+    }
+}
@@ -0,0 +1,45 @@
+package ar.edu.itba.ss.benchmarks;
+
+import ar.edu.itba.ss.moleculardynamics.dampedharmonicoscillator.Simulation;
+import ar.edu.itba.ss.odemethods.OdeMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// one invocation is a full 5 s damped-oscillator solve, so the scores are per step and the state never decays into denormals
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OdeMethodBenchmark {
+    private static final double STEP_SIZE = 1e-4;
+    private static final int STEPS = 50_000;
+
+    @Param({"Analytic", "Euler", "Verlet", "Beeman", "Gear"})
+    public String method;
+
+    private OdeMethod odeMethod;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        double r0 = 1;
+        double gamma = 100;
+        double k = 10000;
+        double mass = 70;
+        double v0 = -0.5 * r0 * gamma / mass;
+
+        odeMethod = Simulation.createMethod(method, r0, v0, k, gamma, mass);
+        odeMethod.initialize(STEP_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public double step() {
+        for (int i = 0; i < STEPS; i++) {
+            odeMethod.step(STEP_SIZE);
+        }
+        return odeMethod.getPosition();
+    }
+}
@@ -0,0 +1,67 @@
+package ar.edu.itba.ss.benchmarks;
+
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.MatterParticles;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.Simulation;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.SimulationStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// the termination check runs once per integration step
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatusBenchmark {
+    private static final int POSITIONS = 64;
+    private static final double CHARGE = Math.pow(10, -19);
+    private static final double MASS = Math.pow(10, -27);
+    private static final double DISTANCE = Math.pow(10, -8);
+    private static final int PARTICLES_PER_ROW = 16;
+
+    // one simulation per starting height, since the projectile's position is only set through the constructor
+    private Simulation[] simulations;
+    private double dCut;
+    private double boxWidth;
+    private double boxHeight;
+    private double[] xs;
+    private double[] ys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dCut = Simulation.getAbsorptionDistance(DISTANCE);
+        boxWidth = boxHeight = DISTANCE * (PARTICLES_PER_ROW - 1);
+
+        // a band one spacing wide around the box so the escape branches are exercised too
+        SplittableRandom random = new SplittableRandom(PARTICLES_PER_ROW);
+        xs = new double[POSITIONS];
+        ys = new double[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = random.nextDouble(-DISTANCE, boxWidth + DISTANCE);
+            ys[i] = random.nextDouble(-DISTANCE, boxHeight + DISTANCE);
+        }
+
+        // the projectile starts at x = -d, so only the heights vary here
+        MatterParticles matterParticles = new MatterParticles(PARTICLES_PER_ROW, DISTANCE, CHARGE, MASS);
+        simulations = new Simulation[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            simulations[i] = new Simulation(matterParticles, ys[i], 50000, CHARGE, MASS);
+        }
+    }
+
+    @Benchmark
+    public SimulationStatus isFinished() {
+        next = (next + 1) & (POSITIONS - 1);
+        return simulations[next].isFinished(dCut);
+    }
+
+    @Benchmark
+    public SimulationStatus getStatus() {
+        next = (next + 1) & (POSITIONS - 1);
+        return Simulation.getStatus(xs[next], ys[next], DISTANCE, boxWidth, boxHeight, dCut);
+    }
+}
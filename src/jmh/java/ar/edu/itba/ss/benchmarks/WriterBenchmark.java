@@ -0,0 +1,58 @@
+package ar.edu.itba.ss.benchmarks;
+
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.BinaryTrajectoryWriter;
+import ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.TextTrajectoryWriter;
+import ar.edu.itba.ss.output.AsyncSink;
+import ar.edu.itba.ss.output.OverflowPolicy;
+import ar.edu.itba.ss.output.Sink;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// scores are per trajectory row; the default target keeps the disk out of the measurement
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriterBenchmark {
+    @Param({"text", "binary"})
+    public String writer;
+
+    // whether the writer sits behind an AsyncSink
+    @Param({"false", "true"})
+    public boolean async;
+
+    @Param({"/dev/null"})
+    public String outputFileName;
+
+    private Sink sink;
+    private final double[] row = new double[5];
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        Sink delegate = switch (writer) {
+            case "text" -> new TextTrajectoryWriter(outputFileName);
+            case "binary" -> new BinaryTrajectoryWriter(outputFileName, 1e-8, 16, 15e-8, 17e-8, 7.5e-8, 50000, 1e-27, 1e-19, 1e-15, 1);
+            default -> throw new IllegalArgumentException("Unknown writer: " + writer);
+        };
+        sink = async ? new AsyncSink(delegate, row.length, 1 << 16, OverflowPolicy.BLOCK) : delegate;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        sink.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        row[0] += 1e-12;
+        row[1] -= 1e-12;
+        row[2] = 50000;
+        row[3] = -1.5;
+        row[4] = 1e-19;
+        sink.write(row);
+    }
+}
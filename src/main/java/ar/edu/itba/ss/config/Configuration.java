@@ -0,0 +1,150 @@
+package ar.edu.itba.ss.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Immutable string settings, safe to share between threads. load layers them, lowest precedence first: the
+// properties or flat JSON file named by a config key, the JVM system properties, then key=value arguments
+// (--key=value and -Dkey=value are accepted too). Lists are comma separated; JSON arrays are stored that way.
+// System properties are only looked up for the keys a simulation asks for, so the JVM's own ones (java.home,
+// user.dir, file.encoding, ...) never become settings and an unrelated -D flag cannot shadow anything else.
+public final class Configuration {
+    public static final String FILE_KEY = "config";
+
+    // arguments and with() overrides
+    private final Map<String, String> values;
+    private final Map<String, String> systemProperties;
+    private final Map<String, String> fileValues;
+
+    private Configuration(Map<String, String> values, Map<String, String> systemProperties, Map<String, String> fileValues) {
+        this.values = Map.copyOf(values);
+        this.systemProperties = Map.copyOf(systemProperties);
+        this.fileValues = Map.copyOf(fileValues);
+    }
+
+    public static Configuration of(Map<String, String> values) {
+        return new Configuration(values, Map.of(), Map.of());
+    }
+
+    public static Configuration fromSystemProperties() {
+        return new Configuration(Map.of(), systemProperties(), Map.of());
+    }
+
+    public static Configuration load(String[] args) throws IOException {
+        Map<String, String> arguments = parseArguments(args);
+        Map<String, String> system = systemProperties();
+
+        String file = arguments.getOrDefault(FILE_KEY, system.get(FILE_KEY));
+        return new Configuration(arguments, system, file != null ? read(Path.of(file)) : Map.of());
+    }
+
+    // .json files hold one flat object; anything else is read as a properties file
+    public static Map<String, String> read(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".json")) {
+            return FlatJsonReader.read(Files.readString(path));
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key).trim());
+        }
+        return values;
+    }
+
+    private static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            String setting = arg.startsWith("--") ? arg.substring(2) : arg.startsWith("-D") ? arg.substring(2) : arg;
+            int separator = setting.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            values.put(setting.substring(0, separator), setting.substring(separator + 1));
+        }
+        return values;
+    }
+
+    private static Map<String, String> systemProperties() {
+        Properties properties = System.getProperties();
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        return values;
+    }
+
+    public Configuration with(String key, String value) {
+        Map<String, String> copy = new HashMap<>(values);
+        copy.put(key, value);
+        return new Configuration(copy, systemProperties, fileValues);
+    }
+
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    // null when absent
+    public String get(String key) {
+        String value = values.get(key);
+        if (value == null) {
+            value = systemProperties.get(key);
+        }
+        return value != null ? value : fileValues.get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = get(key);
+        return value != null ? Double.parseDouble(value.trim()) : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = get(key);
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    // the values of a comma separated list, or of defaultValue when absent
+    public String[] getStrings(String key, String defaultValue) {
+        String value = getString(key, defaultValue);
+        if (value == null) {
+            return new String[0];
+        }
+        String[] tokens = value.split(",");
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokens[i].trim();
+        }
+        return tokens;
+    }
+
+    public double[] getDoubles(String key, String defaultValue) {
+        String[] tokens = getStrings(key, defaultValue);
+        double[] parsed = new double[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            parsed[i] = Double.parseDouble(tokens[i]);
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,148 @@
+package ar.edu.itba.ss.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads a single JSON object whose values are strings, numbers, booleans, null or arrays of those. Numbers
+// keep their literal text and arrays become comma separated lists, so both read like properties values.
+final class FlatJsonReader {
+    private final String text;
+    private int position;
+
+    private FlatJsonReader(String text) {
+        this.text = text;
+    }
+
+    static Map<String, String> read(String text) {
+        FlatJsonReader reader = new FlatJsonReader(text);
+        Map<String, String> values = reader.readObject();
+        reader.skipWhitespace();
+        if (reader.position != text.length()) {
+            throw reader.error("Unexpected content after the object");
+        }
+        return values;
+    }
+
+    private Map<String, String> readObject() {
+        Map<String, String> values = new HashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            position++;
+            return values;
+        }
+        while (true) {
+            String key = readString();
+            expect(':');
+            String value = readValue(true);
+            if (value != null) {
+                values.put(key, value);
+            }
+            if (peek() == ',') {
+                position++;
+                continue;
+            }
+            expect('}');
+            return values;
+        }
+    }
+
+    private String readValue(boolean allowArray) {
+        char next = peek();
+        if (next == '"') {
+            return readString();
+        }
+        if (next == '[' && allowArray) {
+            position++;
+            StringBuilder list = new StringBuilder();
+            if (peek() == ']') {
+                position++;
+                return "";
+            }
+            while (true) {
+                if (list.length() > 0) {
+                    list.append(',');
+                }
+                list.append(readValue(false));
+                if (peek() == ',') {
+                    position++;
+                    continue;
+                }
+                expect(']');
+                return list.toString();
+            }
+        }
+        if (next == '{' || next == '[') {
+            throw error("Nested values are not supported");
+        }
+
+        int start = position;
+        while (position < text.length() && ",}] \t\r\n".indexOf(text.charAt(position)) < 0) {
+            position++;
+        }
+        String literal = text.substring(start, position);
+        if (literal.isEmpty()) {
+            throw error("Expected a value");
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position >= text.length()) {
+                break;
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 't' -> value.append('\t');
+                case 'r' -> value.append('\r');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw error("Truncated unicode escape");
+                    }
+                    value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    position += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        return text.charAt(position);
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + position);
+    }
+}
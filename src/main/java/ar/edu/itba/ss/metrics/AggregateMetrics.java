@@ -0,0 +1,53 @@
+package ar.edu.itba.ss.metrics;
+
+import java.util.Collection;
+
+// Live sum over per-worker metrics; the gauges report the worst worker instead of a sum where a sum means nothing
+public class AggregateMetrics implements SimulationMetricsMXBean {
+    private final Collection<SimulationMetrics> workers;
+
+    // workers may keep growing while the aggregate is registered, so it must be safe to iterate concurrently
+    public AggregateMetrics(Collection<SimulationMetrics> workers) {
+        this.workers = workers;
+    }
+
+    @Override
+    public long getCompletedRuns() {
+        return workers.stream().mapToLong(SimulationMetrics::getCompletedRuns).sum();
+    }
+
+    @Override
+    public long getSteps() {
+        return workers.stream().mapToLong(SimulationMetrics::getSteps).sum();
+    }
+
+    @Override
+    public long getForceEvaluations() {
+        return workers.stream().mapToLong(SimulationMetrics::getForceEvaluations).sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return workers.stream().mapToLong(SimulationMetrics::getBytesWritten).sum();
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return workers.stream().mapToDouble(SimulationMetrics::getStepsPerSecond).sum();
+    }
+
+    @Override
+    public double getSimulatedTime() {
+        return workers.stream().mapToDouble(SimulationMetrics::getSimulatedTime).max().orElse(0);
+    }
+
+    @Override
+    public double getEnergyDrift() {
+        return workers.stream().mapToDouble(metrics -> Math.abs(metrics.getEnergyDrift())).max().orElse(0);
+    }
+
+    @Override
+    public double getBusySeconds() {
+        return workers.stream().mapToDouble(SimulationMetrics::getBusySeconds).sum();
+    }
+}
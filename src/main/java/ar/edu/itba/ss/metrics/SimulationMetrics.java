@@ -0,0 +1,210 @@
+package ar.edu.itba.ss.metrics;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+// Progress of the simulations run by one thread. Only the owning thread writes, and only every publishInterval
+// steps, so the fields are plain volatiles instead of atomics and the hot loop pays a single null check when
+// metrics are off. Counters add up over every run of the owner; the gauges describe the current run.
+// Published values are also emitted as JFR events, which cost nothing unless a recording enables them.
+public class SimulationMetrics implements SimulationMetricsMXBean {
+    public static final String DOMAIN = "ar.edu.itba.ss";
+    private static final LongSupplier NO_OUTPUT = () -> 0;
+
+    private final String name;
+    private final long publishInterval;
+
+    private volatile long completedRuns;
+    private volatile long completedSteps;
+    private volatile long completedForceEvaluations;
+    private volatile long completedBytes;
+    private volatile long completedNanos;
+    private volatile long runSteps;
+    private volatile long runForceEvaluations;
+    private volatile double simulatedTime;
+    private volatile double energyDrift;
+    private volatile double stepsPerSecond;
+    private volatile LongSupplier bytesWritten = NO_OUTPUT;
+    private volatile long runStartNanos;
+    private volatile boolean running;
+
+    private long lastPublishNanos;
+    private long lastPublishSteps;
+    private SimulationRunEvent runEvent;
+
+    public SimulationMetrics(String name, long publishInterval) {
+        if (publishInterval < 1) {
+            throw new IllegalArgumentException("Publish interval must be at least 1");
+        }
+        this.name = name;
+        this.publishInterval = publishInterval;
+    }
+
+    public static boolean isEnabled() {
+        return isEnabled(Configuration.fromSystemProperties());
+    }
+
+    public static boolean isEnabled(Configuration configuration) {
+        return configuration.getBoolean("metrics", false);
+    }
+
+    public static SimulationMetrics fromProperties(String type, String name) {
+        return from(Configuration.fromSystemProperties(), type, name);
+    }
+
+    // null unless metrics=true; otherwise registered in the platform MBean server as DOMAIN:type=type,name=name
+    public static SimulationMetrics from(Configuration configuration, String type, String name) {
+        if (!isEnabled(configuration)) {
+            return null;
+        }
+
+        SimulationMetrics metrics = new SimulationMetrics(name, configuration.getLong("metricsInterval", 1000));
+        register(metrics, type, name);
+        return metrics;
+    }
+
+    // the name must be unique in the JVM; pass the returned ObjectName to unregister when the owner goes away
+    public static ObjectName register(SimulationMetricsMXBean bean, String type, String name) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister metrics " + objectName, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPublishInterval() {
+        return publishInterval;
+    }
+
+    // bytesWritten reports the output of this run, or is null when the run writes nothing; initialSteps are the
+    // steps already behind a resumed run, so the first stepsPerSecond only counts the steps taken since
+    public void startRun(LongSupplier bytesWritten, long initialSteps) {
+        this.bytesWritten = bytesWritten != null ? bytesWritten : NO_OUTPUT;
+        this.runSteps = 0;
+        this.runForceEvaluations = 0;
+        this.simulatedTime = 0;
+        this.energyDrift = 0;
+        this.stepsPerSecond = 0;
+        this.lastPublishNanos = this.runStartNanos = System.nanoTime();
+        this.lastPublishSteps = initialSteps;
+        this.running = true;
+
+        this.runEvent = new SimulationRunEvent();
+        this.runEvent.begin();
+    }
+
+    // steps and forceEvaluations are totals for the current run
+    public void publish(long steps, long forceEvaluations, double simulatedTime, double energyDrift) {
+        long now = System.nanoTime();
+        if (now > lastPublishNanos) {
+            this.stepsPerSecond = (steps - lastPublishSteps) * 1e9 / (now - lastPublishNanos);
+        }
+        lastPublishNanos = now;
+        lastPublishSteps = steps;
+
+        this.runSteps = steps;
+        this.runForceEvaluations = forceEvaluations;
+        this.simulatedTime = simulatedTime;
+        this.energyDrift = energyDrift;
+
+        SimulationProgressEvent event = new SimulationProgressEvent();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.steps = steps;
+            event.forceEvaluations = forceEvaluations;
+            event.stepsPerSecond = stepsPerSecond;
+            event.simulatedTime = simulatedTime;
+            event.energyDrift = energyDrift;
+            event.commit();
+        }
+    }
+
+    // Folds the run into the counters. A concurrent reader may briefly miss the run's steps while they move from
+    // the run fields to the completed ones, never count them twice.
+    public void finishRun(long steps, long forceEvaluations, double simulatedTime, double energyDrift, String status) {
+        this.simulatedTime = simulatedTime;
+        this.energyDrift = energyDrift;
+        this.running = false;
+        this.runSteps = 0;
+        this.runForceEvaluations = 0;
+        this.completedSteps += steps;
+        this.completedForceEvaluations += forceEvaluations;
+        this.completedBytes += bytesWritten.getAsLong();
+        this.bytesWritten = NO_OUTPUT;
+        this.completedNanos += System.nanoTime() - runStartNanos;
+        this.completedRuns++;
+
+        runEvent.end();
+        if (runEvent.shouldCommit()) {
+            runEvent.name = name;
+            runEvent.status = status;
+            runEvent.steps = steps;
+            runEvent.forceEvaluations = forceEvaluations;
+            runEvent.energyDrift = energyDrift;
+            runEvent.commit();
+        }
+        runEvent = null;
+    }
+
+    @Override
+    public long getCompletedRuns() {
+        return completedRuns;
+    }
+
+    @Override
+    public long getSteps() {
+        return completedSteps + runSteps;
+    }
+
+    @Override
+    public long getForceEvaluations() {
+        return completedForceEvaluations + runForceEvaluations;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return completedBytes + bytesWritten.getAsLong();
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return running ? stepsPerSecond : 0;
+    }
+
+    @Override
+    public double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    @Override
+    public double getEnergyDrift() {
+        return energyDrift;
+    }
+
+    @Override
+    public double getBusySeconds() {
+        long busy = completedNanos;
+        if (running) {
+            busy += System.nanoTime() - runStartNanos;
+        }
+        return busy / 1e9;
+    }
+}
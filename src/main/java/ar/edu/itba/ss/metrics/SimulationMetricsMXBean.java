@@ -0,0 +1,19 @@
+package ar.edu.itba.ss.metrics;
+
+public interface SimulationMetricsMXBean {
+    long getCompletedRuns();
+
+    long getSteps();
+
+    long getForceEvaluations();
+
+    long getBytesWritten();
+
+    double getStepsPerSecond();
+
+    double getSimulatedTime();
+
+    double getEnergyDrift();
+
+    double getBusySeconds();
+}
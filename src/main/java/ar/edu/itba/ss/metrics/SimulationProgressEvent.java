@@ -0,0 +1,33 @@
+package ar.edu.itba.ss.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ar.edu.itba.ss.SimulationProgress")
+@Label("Simulation Progress")
+@Category("Molecular Dynamics")
+@Description("Periodic snapshot of a running simulation")
+@StackTrace(false)
+public class SimulationProgressEvent extends jdk.jfr.Event {
+    @Label("Metrics Name")
+    public String name;
+
+    @Label("Steps")
+    public long steps;
+
+    @Label("Force Evaluations")
+    public long forceEvaluations;
+
+    @Label("Steps Per Second")
+    public double stepsPerSecond;
+
+    @Label("Simulated Time")
+    @Description("Seconds of simulated time")
+    public double simulatedTime;
+
+    @Label("Energy Drift")
+    public double energyDrift;
+}
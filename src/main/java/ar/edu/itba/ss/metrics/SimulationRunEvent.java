@@ -0,0 +1,29 @@
+package ar.edu.itba.ss.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ar.edu.itba.ss.SimulationRun")
+@Label("Simulation Run")
+@Category("Molecular Dynamics")
+@Description("One projectile run from start to termination")
+@StackTrace(false)
+public class SimulationRunEvent extends jdk.jfr.Event {
+    @Label("Metrics Name")
+    public String name;
+
+    @Label("Status")
+    public String status;
+
+    @Label("Steps")
+    public long steps;
+
+    @Label("Force Evaluations")
+    public long forceEvaluations;
+
+    @Label("Energy Drift")
+    public double energyDrift;
+}
@@ -0,0 +1,144 @@
+package ar.edu.itba.ss.moleculardynamics.dampedharmonicoscillator;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// runs every (stepSize, method) pair of a dt convergence study inside one JVM
+public class ConvergenceSweep {
+    private final double r0;
+    private final double v0;
+    private final double k;
+    private final double gamma;
+    private final double mass;
+    private final double time;
+
+    public ConvergenceSweep(double r0, double v0, double k, double gamma, double mass, double time) {
+        this.r0 = r0;
+        this.v0 = v0;
+        this.k = k;
+        this.gamma = gamma;
+        this.mass = mass;
+        this.time = time;
+    }
+
+    public record Task(String method, double stepSize) {
+    }
+
+    public record Result(Task task, long steps, ErrorStatistics errors, long elapsedNanos) {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Configuration configuration = Configuration.load(args);
+        String outputFileName = configuration.getString("outputFileName", "ECM.csv");
+        double time = configuration.getDouble("time", 5);
+        double minStepSize = configuration.getDouble("minStepSize", 1e-5);
+        double maxStepSize = configuration.getDouble("maxStepSize", 1e-1);
+        int stepSizeCount = configuration.getInt("stepSizeCount", 100);
+        String[] methods = configuration.getStrings("methods", "Verlet,Beeman,Gear");
+        int parallelism = configuration.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+        OscillatorConfig oscillator = OscillatorConfig.from(configuration);
+
+        double[] stepSizes = logspace(Math.log10(minStepSize), Math.log10(maxStepSize), stepSizeCount);
+        List<Task> tasks = new ArrayList<>(stepSizes.length * methods.length);
+        for (double stepSize : stepSizes) {
+            for (String method : methods) {
+                tasks.add(new Task(method.trim(), stepSize));
+            }
+        }
+
+        System.out.println("Tasks: " + tasks.size());
+        System.out.println("Parallelism: " + parallelism);
+
+        ConvergenceSweep sweep = new ConvergenceSweep(oscillator.r0(), oscillator.v0(), oscillator.k(), oscillator.gamma(), oscillator.mass(), time);
+        long startTime = System.nanoTime();
+        List<Result> results = sweep.run(tasks, parallelism);
+        System.out.println("Elapsed: " + (System.nanoTime() - startTime) / 1e9 + " s");
+
+        printTimings(results);
+        printResults(stepSizes, methods, results, outputFileName);
+    }
+
+    // the smallest step sizes are the most expensive, so they are submitted first to keep the tail short
+    public List<Result> run(List<Task> tasks, int parallelism) throws InterruptedException, ExecutionException {
+        List<Task> ordered = new ArrayList<>(tasks);
+        ordered.sort(Comparator.comparingDouble(Task::stepSize));
+
+        List<Callable<Result>> callables = new ArrayList<>(ordered.size());
+        for (Task task : ordered) {
+            callables.add(() -> run(task));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Result> results = new ArrayList<>(ordered.size());
+            for (Future<Result> future : pool.invokeAll(callables)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public Result run(Task task) {
+        long startTime = System.nanoTime();
+        long steps = (long) (time / task.stepSize());
+
+        Simulation simulation = new Simulation(r0, v0, k, gamma, mass, List.of("Analytic", task.method()));
+        ErrorStatistics errors = simulation.computeErrors(steps, task.stepSize()).get(0);
+
+        return new Result(task, steps, errors, System.nanoTime() - startTime);
+    }
+
+    public static void printTimings(List<Result> results) {
+        System.out.println("method stepSize steps elapsedMs");
+        for (Result result : results) {
+            System.out.println(result.task().method() + " " + result.task().stepSize() + " " + result.steps()
+                    + " " + result.elapsedNanos() / 1e6);
+        }
+    }
+
+    // same layout as benchmarks/quadratic_error_vs_dt.py writes and reads: no header, one space separated row per
+    // step size with the mean squared error of every method, in the order they were requested
+    public static void printResults(double[] stepSizes, String[] methods, List<Result> results, String fileName) throws IOException {
+        PrintWriter printWriter = new PrintWriter(new FileWriter(fileName));
+
+        for (double stepSize : stepSizes) {
+            printWriter.print(stepSize);
+            for (String method : methods) {
+                printWriter.print(" " + find(results, method.trim(), stepSize).errors().getMeanSquaredError());
+            }
+            printWriter.print("\n");
+        }
+
+        printWriter.close();
+    }
+
+    private static Result find(List<Result> results, String method, double stepSize) {
+        for (Result result : results) {
+            if (result.task().method().equals(method) && result.task().stepSize() == stepSize) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Missing result for " + method + " at " + stepSize);
+    }
+
+    static double[] logspace(double startExponent, double endExponent, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            double exponent = count == 1 ? startExponent : startExponent + (endExponent - startExponent) * i / (count - 1);
+            values[i] = Math.pow(10, exponent);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,47 @@
+package ar.edu.itba.ss.moleculardynamics.dampedharmonicoscillator;
+
+// running error of one method against the analytic solution; nothing is kept per step
+public class ErrorStatistics {
+    private final double k;
+    private final double mass;
+    private double sumOfSquaredErrors;
+    private double maxAbsoluteError;
+    private double maxEnergyError;
+    private long samples;
+
+    public ErrorStatistics(double k, double mass) {
+        this.k = k;
+        this.mass = mass;
+    }
+
+    public void accept(double position, double velocity, double analyticPosition, double analyticVelocity) {
+        double error = position - analyticPosition;
+        double energyError = Math.abs(getEnergy(position, velocity) - getEnergy(analyticPosition, analyticVelocity));
+
+        this.sumOfSquaredErrors += error * error;
+        this.maxAbsoluteError = Math.max(this.maxAbsoluteError, Math.abs(error));
+        this.maxEnergyError = Math.max(this.maxEnergyError, energyError);
+        this.samples++;
+    }
+
+    private double getEnergy(double position, double velocity) {
+        return 0.5 * mass * velocity * velocity + 0.5 * k * position * position;
+    }
+
+    // same definition as the post-processing scripts: sum of squared errors over the number of steps
+    public double getMeanSquaredError() {
+        return samples == 0 ? 0 : sumOfSquaredErrors / samples;
+    }
+
+    public double getMaxAbsoluteError() {
+        return maxAbsoluteError;
+    }
+
+    public double getMaxEnergyError() {
+        return maxEnergyError;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+}
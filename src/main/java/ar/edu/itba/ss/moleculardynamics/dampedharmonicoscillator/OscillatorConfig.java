@@ -0,0 +1,17 @@
+package ar.edu.itba.ss.moleculardynamics.dampedharmonicoscillator;
+
+import ar.edu.itba.ss.config.Configuration;
+
+// Oscillator physics shared by Simulation and ConvergenceSweep. Without v0 the initial velocity is
+// -r0 * gamma / (2 * mass), the value the analytic solution was written for.
+public record OscillatorConfig(double r0, double v0, double k, double gamma, double mass) {
+
+    public static OscillatorConfig from(Configuration configuration) {
+        double r0 = configuration.getDouble("r0", 1);
+        double k = configuration.getDouble("k", 10000);
+        double gamma = configuration.getDouble("gamma", 100);
+        double mass = configuration.getDouble("mass", 70);
+        double v0 = configuration.getDouble("v0", -0.5 * r0 * gamma / mass);
+        return new OscillatorConfig(r0, v0, k, gamma, mass);
+    }
+}
@@ -1,93 +1,165 @@
 package ar.edu.itba.ss.moleculardynamics.dampedharmonicoscillator;
 
+import ar.edu.itba.ss.config.Configuration;
 import ar.edu.itba.ss.odemethods.*;
+import ar.edu.itba.ss.output.DelimitedTextSink;
+import ar.edu.itba.ss.output.Sink;
+import ar.edu.itba.ss.output.Sinks;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.BiFunction;
 
 public class Simulation {
+    private static final String[] METHOD_NAMES = {"Analytic", "Verlet", "Beeman", "Gear"};
+
+    private final List<String> methodNames;
     private final List<OdeMethod> methods;
+    private final double k;
+    private final double mass;
 
     public Simulation(double r0, double v0, double k, double gamma, double mass) {
-        BiFunction<Double, Double, Double> force = (r, v) -> -k * r - gamma * v;
+        this(r0, v0, k, gamma, mass, List.of(METHOD_NAMES));
+    }
+
+    // the first method is the reference every other one is compared against in computeErrors
+    public Simulation(double r0, double v0, double k, double gamma, double mass, List<String> methodNames) {
+        this.k = k;
+        this.mass = mass;
+        this.methodNames = List.copyOf(methodNames);
 
         methods = new ArrayList<>();
-        methods.add(new DampedHarmonicOscillatorAnalyticMethod(r0, v0, mass, k, gamma));
-        methods.add(new VerletMethod(r0, v0, force, mass));
-        methods.add(new BeemanMethod(r0, v0, force, mass));
+        for (String methodName : methodNames) {
+            methods.add(createMethod(methodName, r0, v0, k, gamma, mass));
+        }
+    }
+
+    public static OdeMethod createMethod(String name, double r0, double v0, double k, double gamma, double mass) {
+        Force force = (r, v) -> -k * r - gamma * v;
+
+        return switch (name) {
+            case "Analytic" -> new DampedHarmonicOscillatorAnalyticMethod(r0, v0, mass, k, gamma);
+            case "Euler" -> new EulerMethod(r0, v0, force, mass);
+            case "Verlet" -> new VerletMethod(r0, v0, force, mass);
+            case "Beeman" -> new BeemanMethod(r0, v0, force, mass);
+            case "Gear" -> createGear(r0, v0, k, gamma, mass, force);
+            default -> throw new IllegalArgumentException("Unknown method: " + name);
+        };
+    }
 
+    private static OdeMethod createGear(double r0, double v0, double k, double gamma, double mass, Force force) {
         double initialR2 = force.apply(r0, v0) / mass;
         double initialR3 = (-k * v0 - gamma * initialR2) / mass;
         double initialR4 = (-k * initialR2 - gamma * initialR3) / mass;
         double initialR5 = (-k * initialR3 - gamma * initialR4) / mass;
 
-        methods.add(new GearPredictorCorrector(r0, v0, initialR3, initialR4, initialR5, force, mass,true));
-
+        return new GearPredictorCorrector(r0, v0, initialR3, initialR4, initialR5, force, mass, true);
     }
 
     public static void main(String[] args) throws IOException {
 
-        String outputFileName = System.getProperty("outputFileName", "output.csv");
-        double time = Double.parseDouble(System.getProperty("time", "5"));
-        double stepSize = Double.parseDouble(System.getProperty("stepSize", "0.1"));
-        int steps = (int) (time / stepSize);
-
-        double r0 = 1;
-        double gamma = 100;
-        double k = 10000;
-        double mass = 70;
-        double v0 = -0.5 * r0 * gamma / mass;
-        Simulation simulation = new Simulation(r0, v0, k, gamma, mass);
-
-        List<double[]> results = simulation.simulate(steps, stepSize);
-
-        printResults(results, 1, outputFileName);
-    }
-
-    public List<double[]> simulate(int steps, double stepSize) {
+        Configuration configuration = Configuration.load(args);
+        String outputFileName = configuration.getString("outputFileName", "output.csv");
+        double time = configuration.getDouble("time", 5);
+        double stepSize = configuration.getDouble("stepSize", 0.1);
+        long steps = (long) (time / stepSize);
+        int saveFrequency = configuration.getInt("saveFrequency", 1);
+
+        OscillatorConfig oscillator = OscillatorConfig.from(configuration);
+        // methods=Analytic,Verlet selects a subset; errors mode compares every other method against the first one
+        List<String> methodNames = List.of(configuration.getStrings("methods", String.join(",", METHOD_NAMES)));
+        Simulation simulation = new Simulation(oscillator.r0(), oscillator.v0(), oscillator.k(), oscillator.gamma(), oscillator.mass(), methodNames);
+
+        // errors mode integrates without writing the trajectory and writes a header and one summary row
+        if ("errors".equals(configuration.getString("mode", "trajectory"))) {
+            String errorsFileName = configuration.getString("errorsFileName", "errors.csv");
+            simulation.printErrors(simulation.computeErrors(steps, stepSize), stepSize, errorsFileName);
+            return;
+        }
 
-        final List<double[]> results = new ArrayList<>();
+        Sink sink = Sinks.from(configuration, new DelimitedTextSink(outputFileName, String.join(";", methodNames), ";"), simulation.methods.size());
 
-        for (OdeMethod method : this.methods) {
-            results.add(method.solve(steps, stepSize));
+        try (sink) {
+            simulation.simulate(steps, stepSize, saveFrequency, sink);
         }
 
-        return results;
+        Sinks.printStatistics(sink);
     }
 
-    public static void printResults(List<double[]> results, int saveFrequency, String fileName) throws IOException {
+    // advances every method in lockstep and writes one row of positions per saved step, in constant memory
+    public void simulate(long steps, double stepSize, int saveFrequency, Sink sink) throws IOException {
+        final double[] currentOutput = new double[methods.size()];
 
-        int steps = results.get(0).length;
+        for (OdeMethod method : methods) {
+            method.initialize(stepSize);
+        }
 
-        PrintWriter printWriter = new PrintWriter(new FileWriter(fileName));
+        for (long currentStep = 0; currentStep < steps; currentStep++) {
+            if (currentStep > 0) {
+                for (OdeMethod method : methods) {
+                    method.step(stepSize);
+                }
+            }
 
-        printWriter.print("Analytic;Verlet;Beeman;Gear\n");
+            if (currentStep % saveFrequency == 0) {
+                for (int method = 0; method < methods.size(); method++) {
+                    currentOutput[method] = methods.get(method).getPosition();
+                }
+                sink.write(currentOutput);
+            }
+        }
+    }
 
-        final List<String> currentOutput = new ArrayList<>();
+    // advances every method in lockstep, comparing each one against the analytic method as it goes
+    public List<ErrorStatistics> computeErrors(long steps, double stepSize) {
+        final OdeMethod analytic = methods.get(0);
+        final List<ErrorStatistics> errors = new ArrayList<>();
 
-        for (int currentStep = 0; currentStep < steps; currentStep++) {
-            if (currentStep % saveFrequency == 0) {
+        for (int method = 1; method < methods.size(); method++) {
+            errors.add(new ErrorStatistics(k, mass));
+        }
 
-                currentOutput.clear();
+        for (OdeMethod method : methods) {
+            method.initialize(stepSize);
+        }
 
-                for (double[] result : results) {
-                    currentOutput.add(Double.toString(result[currentStep]));
+        for (long currentStep = 0; currentStep < steps; currentStep++) {
+            if (currentStep > 0) {
+                for (OdeMethod method : methods) {
+                    method.step(stepSize);
                 }
+            }
 
-                String output = String.join(";", currentOutput);
-                printWriter.print(output + "\n");
-
+            double analyticPosition = analytic.getPosition();
+            double analyticVelocity = analytic.getVelocity();
+            for (int method = 1; method < methods.size(); method++) {
+                OdeMethod current = methods.get(method);
+                errors.get(method - 1).accept(current.getPosition(), current.getVelocity(), analyticPosition, analyticVelocity);
             }
         }
 
-        printWriter.close();
+        return errors;
     }
 
-    public static void printErrors(List<double[]> results, int saveFrequency, String fileName) throws IOException {
+    public void printErrors(List<ErrorStatistics> errors, double stepSize, String fileName) throws IOException {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(fileName))) {
+            StringBuilder header = new StringBuilder("stepSize");
+            for (String name : methodNames.subList(1, methodNames.size())) {
+                header.append(';').append(name).append("MeanSquaredError")
+                        .append(';').append(name).append("MaxAbsoluteError")
+                        .append(';').append(name).append("MaxEnergyError");
+            }
+            printWriter.println(header);
 
+            printWriter.print(stepSize);
+            for (ErrorStatistics error : errors) {
+                printWriter.print(";" + error.getMeanSquaredError()
+                        + ";" + error.getMaxAbsoluteError()
+                        + ";" + error.getMaxEnergyError());
+            }
+            printWriter.println();
+        }
     }
 }
@@ -0,0 +1,256 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Barnes-Hut quadtree over the lattice sites. A cell whose side is below openingAngle times the distance from the
+// evaluation point to the cell's square is replaced by its quadrupole expansion about the cell center; leaves that
+// are too close are summed exactly. Measuring to the square rather than to the center costs little and keeps the
+// error down in the alternating lattice, where the net force is a small difference of large terms. The tree
+// lives in flat arrays in breadth-first order, so every cell's children are contiguous and every level is a
+// contiguous range.
+// Build: sites are sorted by Morton key, which makes every cell a contiguous run of the sorted sites; the
+// topology then follows from binary searches over the keys, and the moments are computed one level at a time,
+// deepest first, with the cells of a level in parallel. Each cell's moments depend only on its own sites or
+// children, so the tree is the same whatever the thread count.
+public class BarnesHutForceProvider implements ForceProvider {
+    private static final int MAX_DEPTH = 20;
+    private static final int INDEX_BITS = 63 - 2 * MAX_DEPTH;
+
+    private final double openingAngle;
+    private final int leafSize;
+    // sites in Morton order
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+    private final long[] keys;
+
+    private final double minX;
+    private final double minY;
+    private final double rootSide;
+
+    private int nodes;
+    private int[] start;
+    private int[] end;
+    private int[] firstChild;
+    private int[] childCount;
+    private double[] centerX;
+    private double[] centerY;
+    private double[] side;
+    private double[] moments;
+    private int[] levelStarts;
+
+    public BarnesHutForceProvider(MatterParticles matterParticles, double openingAngle, int leafSize) {
+        this(matterParticles.getXs(), matterParticles.getYs(), matterParticles.getCharges(), openingAngle, leafSize);
+    }
+
+    public BarnesHutForceProvider(double[] x, double[] y, double[] charge, double openingAngle, int leafSize) {
+        if (openingAngle <= 0 || openingAngle > 1) {
+            throw new IllegalArgumentException("Opening angle must be in (0, 1]");
+        }
+        if (leafSize < 1) {
+            throw new IllegalArgumentException("Leaf size must be positive");
+        }
+        if (x.length >= 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("Too many particles for the Morton keys");
+        }
+        this.openingAngle = openingAngle;
+        this.leafSize = leafSize;
+
+        int count = x.length;
+        double maxX = Arrays.stream(x).max().orElse(0);
+        double maxY = Arrays.stream(y).max().orElse(0);
+        this.minX = Arrays.stream(x).min().orElse(0);
+        this.minY = Arrays.stream(y).min().orElse(0);
+        // slightly larger than the extent so the largest coordinate still falls inside the last cell
+        this.rootSide = Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL) * (1 + 1e-9);
+
+        long[] sortKeys = new long[count];
+        IntStream.range(0, count).parallel().forEach(i ->
+                sortKeys[i] = getMortonKey(x[i], y[i]) << INDEX_BITS | i);
+        Arrays.parallelSort(sortKeys);
+
+        this.x = new double[count];
+        this.y = new double[count];
+        this.charge = new double[count];
+        this.keys = new long[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int index = (int) (sortKeys[i] & ((1L << INDEX_BITS) - 1));
+            this.x[i] = x[index];
+            this.y[i] = y[index];
+            this.charge[i] = charge[index];
+            this.keys[i] = sortKeys[i] >>> INDEX_BITS;
+        });
+
+        buildTopology();
+        buildMoments();
+    }
+
+    // interleaves the cell coordinates at MAX_DEPTH, x bit above y bit
+    private long getMortonKey(double x, double y) {
+        int cells = 1 << MAX_DEPTH;
+        long cellX = Math.min(cells - 1, (long) ((x - minX) / rootSide * cells));
+        long cellY = Math.min(cells - 1, (long) ((y - minY) / rootSide * cells));
+        long key = 0;
+        for (int bit = MAX_DEPTH - 1; bit >= 0; bit--) {
+            key = key << 2 | ((cellX >>> bit) & 1) << 1 | ((cellY >>> bit) & 1);
+        }
+        return key;
+    }
+
+    private void buildTopology() {
+        int capacity = Math.max(16, 2 * x.length / leafSize);
+        start = new int[capacity];
+        end = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        centerX = new double[capacity];
+        centerY = new double[capacity];
+        side = new double[capacity];
+        int[] levels = new int[MAX_DEPTH + 2];
+
+        addNode(0, x.length, minX + 0.5 * rootSide, minY + 0.5 * rootSide, rootSide);
+
+        // breadth first: the nodes of one level are appended while the previous level is scanned
+        int levelStart = 0;
+        int depth = 0;
+        while (levelStart < nodes) {
+            levels[depth] = levelStart;
+            int levelEnd = nodes;
+            for (int node = levelStart; node < levelEnd; node++) {
+                if (end[node] - start[node] <= leafSize || depth == MAX_DEPTH) {
+                    continue;
+                }
+
+                int shift = 2 * (MAX_DEPTH - depth - 1);
+                double childSide = 0.5 * side[node];
+                firstChild[node] = nodes;
+                int childStart = start[node];
+                for (int quadrant = 0; quadrant < 4; quadrant++) {
+                    int childEnd = quadrant == 3 ? end[node] : findQuadrantEnd(childStart, end[node], shift, quadrant);
+                    if (childEnd > childStart) {
+                        double offsetX = (quadrant >> 1) == 0 ? -0.5 : 0.5;
+                        double offsetY = (quadrant & 1) == 0 ? -0.5 : 0.5;
+                        addNode(childStart, childEnd, centerX[node] + offsetX * childSide, centerY[node] + offsetY * childSide, childSide);
+                        childCount[node]++;
+                    }
+                    childStart = childEnd;
+                }
+            }
+            levelStart = levelEnd;
+            depth++;
+        }
+
+        levelStarts = Arrays.copyOf(levels, depth + 1);
+        levelStarts[depth] = nodes;
+    }
+
+    // first index in [from, to) whose quadrant at this shift is above quadrant
+    private int findQuadrantEnd(int from, int to, int shift, int quadrant) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((int) ((keys[middle] >>> shift) & 3) <= quadrant) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void addNode(int from, int to, double nodeCenterX, double nodeCenterY, double nodeSide) {
+        if (nodes == start.length) {
+            int capacity = 2 * nodes;
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            side = Arrays.copyOf(side, capacity);
+        }
+        start[nodes] = from;
+        end[nodes] = to;
+        centerX[nodes] = nodeCenterX;
+        centerY[nodes] = nodeCenterY;
+        side[nodes] = nodeSide;
+        nodes++;
+    }
+
+    private void buildMoments() {
+        moments = new double[nodes * MultipoleExpansion.SIZE];
+        for (int level = levelStarts.length - 2; level >= 0; level--) {
+            IntStream.range(levelStarts[level], levelStarts[level + 1]).parallel().forEach(this::computeMoments);
+        }
+    }
+
+    private void computeMoments(int node) {
+        int offset = node * MultipoleExpansion.SIZE;
+        if (childCount[node] == 0) {
+            for (int i = start[node]; i < end[node]; i++) {
+                MultipoleExpansion.accumulate(moments, offset, x[i] - centerX[node], y[i] - centerY[node], charge[i]);
+            }
+            return;
+        }
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            MultipoleExpansion.translate(moments, child * MultipoleExpansion.SIZE,
+                    centerX[child] - centerX[node], centerY[child] - centerY[node], moments, offset);
+        }
+    }
+
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        force[0] = 0;
+        force[1] = 0;
+        double potential = nodes == 0 || this.x.length == 0 ? 0 : evaluate(0, x, y, force);
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] *= factor;
+        force[1] *= factor;
+        return potential * factor;
+    }
+
+    // adds the field per unit charge into field and returns the potential, both without the Coulomb constant;
+    // openingAngle <= 1 keeps an accepted point at least a side away from the cell, where the expansion converges
+    private double evaluate(int node, double x, double y, double[] field) {
+        double deltaX = x - centerX[node];
+        double deltaY = y - centerY[node];
+        double nodeSide = side[node];
+        double outsideX = Math.max(Math.abs(deltaX) - 0.5 * nodeSide, 0);
+        double outsideY = Math.max(Math.abs(deltaY) - 0.5 * nodeSide, 0);
+
+        if (nodeSide * nodeSide < openingAngle * openingAngle * (outsideX * outsideX + outsideY * outsideY)) {
+            return MultipoleExpansion.evaluate(moments, node * MultipoleExpansion.SIZE, deltaX, deltaY, field);
+        }
+
+        double potential = 0;
+        if (childCount[node] == 0) {
+            double fieldX = 0;
+            double fieldY = 0;
+            for (int i = start[node]; i < end[node]; i++) {
+                double siteDeltaX = x - this.x[i];
+                double siteDeltaY = y - this.y[i];
+                double inverseDistance = 1.0 / Math.sqrt(siteDeltaX * siteDeltaX + siteDeltaY * siteDeltaY);
+                double chargeOverDistance = this.charge[i] * inverseDistance;
+                double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+                fieldX += siteDeltaX * magnitude;
+                fieldY += siteDeltaY * magnitude;
+                potential += chargeOverDistance;
+            }
+            field[0] += fieldX;
+            field[1] += fieldY;
+            return potential;
+        }
+
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            potential += evaluate(child, x, y, field);
+        }
+        return potential;
+    }
+}
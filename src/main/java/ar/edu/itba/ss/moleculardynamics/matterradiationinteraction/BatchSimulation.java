@@ -0,0 +1,201 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+import ar.edu.itba.ss.odemethods.VectorGearPredictorCorrector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Advances many non-interacting projectiles in lockstep with one Gear integrator over an interleaved
+// (x0, y0, x1, y1, ...) state. Finished projectiles are swapped past the active prefix and stop costing
+// force evaluations.
+public class BatchSimulation {
+    private final MatterParticles matterParticles;
+    private final double charge;
+    private final double mass;
+    private final double distanceBetweenParticles;
+    private final double boxWidth;
+    private final double boxHeight;
+    private final double[] initialHeights;
+    private final double[] initialSpeeds;
+
+    public BatchSimulation(MatterParticles matterParticles, double[] initialHeights, double[] initialSpeeds, double charge, double mass) {
+        if (initialHeights.length != initialSpeeds.length) {
+            throw new IllegalArgumentException("Every projectile needs an initial height and an initial speed");
+        }
+        this.matterParticles = matterParticles;
+        this.charge = charge;
+        this.mass = mass;
+        this.distanceBetweenParticles = matterParticles.getDistanceBetweenParticles();
+        this.boxWidth = this.boxHeight = distanceBetweenParticles * (matterParticles.getParticlesPerRow() - 1);
+        this.initialHeights = initialHeights;
+        this.initialSpeeds = initialSpeeds;
+    }
+
+    // every run of the batch must share the lattice and the step size, since they advance in lockstep
+    public static void main(String[] args) throws IOException {
+
+        Configuration configuration = Configuration.load(args);
+        String outputFileName = configuration.getString("outputFileName", "batch.txt");
+        if (!configuration.contains("heightsPerSpeed")) {
+            configuration = configuration.with("heightsPerSpeed", "1000");
+        }
+
+        List<SimulationConfig> runs = SimulationConfig.batch(configuration);
+        SimulationConfig first = runs.get(0);
+        double stepSize = first.stepSize();
+        double[] speeds = new double[runs.size()];
+        double[] heights = new double[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            SimulationConfig run = runs.get(i);
+            if (!run.getLatticeKey().equals(first.getLatticeKey()) || run.stepSize() != stepSize) {
+                throw new IllegalArgumentException("A batch runs on one lattice with one step size");
+            }
+            speeds[i] = run.initialSpeed();
+            heights[i] = run.getInitialHeight();
+        }
+
+        MatterParticles matterParticles = new MatterParticles(first.particlesPerRow(), first.distanceBetweenParticles(), first.charge(), first.mass());
+        BatchSimulation batch = new BatchSimulation(matterParticles, heights, speeds, first.charge(), first.mass());
+
+        long startTime = System.nanoTime();
+        List<SimulationResult> results = batch.run(stepSize);
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        long projectileSteps = 0;
+        Map<SimulationStatus, Integer> statusCounts = new EnumMap<>(SimulationStatus.class);
+        for (SimulationResult result : results) {
+            projectileSteps += result.steps();
+            statusCounts.merge(result.status(), 1, Integer::sum);
+        }
+
+        System.out.println("Projectiles: " + runs.size());
+        System.out.println("Elapsed: " + elapsed + " s");
+        System.out.println("Projectile-steps/s: " + projectileSteps / elapsed);
+        System.out.println("End states: " + statusCounts);
+
+        Ensemble.printResults(runs, results, outputFileName);
+    }
+
+    public List<SimulationResult> run(double stepSize) {
+        int count = initialHeights.length;
+        double dCut = Simulation.getAbsorptionDistance(distanceBetweenParticles);
+
+        double[] r0 = new double[2 * count];
+        double[] v0 = new double[2 * count];
+        for (int p = 0; p < count; p++) {
+            r0[2 * p] = -distanceBetweenParticles;
+            r0[2 * p + 1] = initialHeights[p];
+            v0[2 * p] = initialSpeeds[p];
+        }
+
+        // slot -> projectile, plus per-slot bookkeeping that moves with the projectile on every swap
+        int[] projectile = new int[count];
+        double[] previousX = new double[count];
+        double[] previousY = new double[count];
+        double[] previousVx = new double[count];
+        double[] previousVy = new double[count];
+        double[] trajectoryLength = new double[count];
+        double[] time = new double[count];
+        long[] steps = new long[count];
+        SimulationStatus[] statuses = new SimulationStatus[count];
+        for (int p = 0; p < count; p++) {
+            projectile[p] = p;
+            previousX[p] = r0[2 * p];
+            previousY[p] = r0[2 * p + 1];
+            previousVx[p] = v0[2 * p];
+            previousVy[p] = v0[2 * p + 1];
+            statuses[p] = Simulation.getStatus(previousX[p], previousY[p], distanceBetweenParticles, boxWidth, boxHeight, dCut);
+        }
+
+        CrossingDetector detector = new CrossingDetector(distanceBetweenParticles, boxWidth, boxHeight, dCut);
+        double[] crossing = new double[4];
+
+        double[] initialEnergy = new double[count];
+        double[] force = new double[2];
+        for (int p = 0; p < count; p++) {
+            initialEnergy[p] = 0.5 * mass * initialSpeeds[p] * initialSpeeds[p]
+                    + matterParticles.getTotalElectrostaticForceAndPotential(r0[2 * p], r0[2 * p + 1], charge, force);
+        }
+
+        int[] active = {count};
+        VectorGearPredictorCorrector solver = new VectorGearPredictorCorrector(r0, v0,
+                (r, v, f) -> matterParticles.getTotalElectrostaticForces(r, active[0], charge, f), mass, false);
+
+        SimulationResult[] results = new SimulationResult[count];
+
+        // a finished slot's previous state is where it crossed, not where the integrator left it
+        while (true) {
+            for (int slot = 0; slot < active[0]; ) {
+                SimulationStatus status = statuses[slot];
+
+                if (status == SimulationStatus.NOT_FINISHED) {
+                    slot++;
+                    continue;
+                }
+
+                double x = previousX[slot];
+                double y = previousY[slot];
+                double vx = previousVx[slot];
+                double vy = previousVy[slot];
+                double finalEnergy = 0.5 * mass * (vx * vx + vy * vy) + matterParticles.getTotalElectrostaticForceAndPotential(x, y, charge, force);
+                int p = projectile[slot];
+                // one force evaluation per step plus the one that seeds the Gear acceleration
+                results[p] = new SimulationResult(status, trajectoryLength[slot], steps[slot], (finalEnergy - initialEnergy[p]) / Math.abs(initialEnergy[p]), steps[slot] + 1, time[slot]);
+
+                int last = --active[0];
+                solver.swapComponents(2 * slot, 2 * last);
+                solver.swapComponents(2 * slot + 1, 2 * last + 1);
+                projectile[slot] = projectile[last];
+                previousX[slot] = previousX[last];
+                previousY[slot] = previousY[last];
+                previousVx[slot] = previousVx[last];
+                previousVy[slot] = previousVy[last];
+                trajectoryLength[slot] = trajectoryLength[last];
+                time[slot] = time[last];
+                steps[slot] = steps[last];
+                statuses[slot] = statuses[last];
+            }
+
+            if (active[0] == 0) {
+                break;
+            }
+
+            solver.setActiveDimension(2 * active[0]);
+            solver.step(stepSize);
+
+            for (int slot = 0; slot < active[0]; slot++) {
+                double x = solver.getPosition(2 * slot);
+                double y = solver.getPosition(2 * slot + 1);
+                double vx = solver.getVelocity(2 * slot);
+                double vy = solver.getVelocity(2 * slot + 1);
+                double stepTaken = stepSize;
+
+                statuses[slot] = detector.detect(previousX[slot], previousY[slot], previousVx[slot], previousVy[slot], x, y, vx, vy, stepSize);
+                if (statuses[slot] != SimulationStatus.NOT_FINISHED) {
+                    detector.interpolate(detector.getFraction(), crossing);
+                    x = crossing[0];
+                    y = crossing[1];
+                    vx = crossing[2];
+                    vy = crossing[3];
+                    stepTaken *= detector.getFraction();
+                }
+
+                double deltaX = x - previousX[slot];
+                double deltaY = y - previousY[slot];
+                trajectoryLength[slot] += Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                time[slot] += stepTaken;
+                previousX[slot] = x;
+                previousY[slot] = y;
+                previousVx[slot] = vx;
+                previousVy[slot] = vy;
+                steps[slot]++;
+            }
+        }
+
+        return new ArrayList<>(List.of(results));
+    }
+}
@@ -0,0 +1,80 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.output.Sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Little-endian file: a HEADER_SIZE byte header with the static.txt parameters, then one
+// (x, y, vx, vy, potentialEnergy) row of doubles per saved step. read_binary_trajectory in
+// post_processing/ej2_utils maps it with numpy.memmap.
+public class BinaryTrajectoryWriter implements Sink {
+    public static final int MAGIC = 0x4d445452;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 96;
+    public static final int ROW_SIZE = 5 * Double.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    // written by the thread that flushes, read by metrics
+    private volatile long bytesWritten;
+
+    private BinaryTrajectoryWriter(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(ROW_SIZE * 8192).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public BinaryTrajectoryWriter(String fileName, double distanceBetweenParticles, int particlesPerRow, double boxHeight, double boxWidth, double initialHeight, double initialSpeed, double mass, double charge, double stepSize, int saveFrequency) throws IOException {
+        this(FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(HEADER_SIZE).putInt(particlesPerRow).putInt(saveFrequency).putInt(0);
+        buffer.putDouble(distanceBetweenParticles).putDouble(boxHeight).putDouble(boxWidth).putDouble(initialHeight)
+                .putDouble(initialSpeed).putDouble(mass).putDouble(charge).putDouble(stepSize);
+        while (buffer.position() < HEADER_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    @Override
+    public void write(double[] row) throws IOException {
+        if (buffer.remaining() < ROW_SIZE) {
+            flush();
+        }
+        buffer.putDouble(row[0]).putDouble(row[1]).putDouble(row[2]).putDouble(row[3]).putDouble(row[4]);
+    }
+
+    // continues a file that already has its header and some rows
+    public static BinaryTrajectoryWriter append(String fileName) throws IOException {
+        return new BinaryTrajectoryWriter(FileChannel.open(Path.of(fileName), StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        channel.force(true);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,116 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+// Splits the lattice into square blocks of blockSize x blockSize sites. Blocks within nearBlocks of the
+// block holding the evaluation point are summed exactly; every other block is replaced by its multipole
+// expansion. Larger blocks or a wider near window lower the error at the cost of more exact terms.
+public class CellListForceProvider implements ForceProvider {
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+    private final int particlesPerRow;
+    private final int blockSize;
+    private final int nearBlocks;
+    private final int blocksPerRow;
+    private final double blockWidth;
+    private final double[] blockCenterX;
+    private final double[] blockCenterY;
+    private final double[] moments;
+
+    public CellListForceProvider(MatterParticles matterParticles, int blockSize, int nearBlocks) {
+        if (blockSize < 1 || nearBlocks < 1) {
+            throw new IllegalArgumentException("blockSize and nearBlocks must be positive");
+        }
+        this.x = matterParticles.getXs();
+        this.y = matterParticles.getYs();
+        this.charge = matterParticles.getCharges();
+        this.particlesPerRow = matterParticles.getParticlesPerRow();
+        this.blockSize = blockSize;
+        this.nearBlocks = nearBlocks;
+        this.blocksPerRow = (particlesPerRow + blockSize - 1) / blockSize;
+        this.blockWidth = blockSize * matterParticles.getDistanceBetweenParticles();
+
+        int blocks = blocksPerRow * blocksPerRow;
+        this.blockCenterX = new double[blocks];
+        this.blockCenterY = new double[blocks];
+        this.moments = new double[blocks * MultipoleExpansion.SIZE];
+
+        buildBlocks();
+    }
+
+    private void buildBlocks() {
+        for (int blockRow = 0; blockRow < blocksPerRow; blockRow++) {
+            for (int blockColumn = 0; blockColumn < blocksPerRow; blockColumn++) {
+                int block = blockRow * blocksPerRow + blockColumn;
+                int firstRow = blockRow * blockSize;
+                int lastRow = Math.min(firstRow + blockSize, particlesPerRow) - 1;
+                int firstColumn = blockColumn * blockSize;
+                int lastColumn = Math.min(firstColumn + blockSize, particlesPerRow) - 1;
+
+                double centerX = 0.5 * (x[firstRow * particlesPerRow] + x[lastRow * particlesPerRow]);
+                double centerY = 0.5 * (y[firstColumn] + y[lastColumn]);
+                blockCenterX[block] = centerX;
+                blockCenterY[block] = centerY;
+
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int index = row * particlesPerRow + column;
+                        MultipoleExpansion.accumulate(moments, block * MultipoleExpansion.SIZE, x[index] - centerX, y[index] - centerY, charge[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        int blockRow = clamp((int) Math.floor(x / blockWidth));
+        int blockColumn = clamp((int) Math.floor(y / blockWidth));
+
+        int firstNearRow = Math.max(blockRow - nearBlocks, 0);
+        int lastNearRow = Math.min(blockRow + nearBlocks, blocksPerRow - 1);
+        int firstNearColumn = Math.max(blockColumn - nearBlocks, 0);
+        int lastNearColumn = Math.min(blockColumn + nearBlocks, blocksPerRow - 1);
+
+        force[0] = 0;
+        force[1] = 0;
+        double potential = 0;
+
+        for (int row = 0; row < blocksPerRow; row++) {
+            for (int column = 0; column < blocksPerRow; column++) {
+                boolean near = row >= firstNearRow && row <= lastNearRow && column >= firstNearColumn && column <= lastNearColumn;
+                if (!near) {
+                    int block = row * blocksPerRow + column;
+                    potential += MultipoleExpansion.evaluate(moments, block * MultipoleExpansion.SIZE, x - blockCenterX[block], y - blockCenterY[block], force);
+                }
+            }
+        }
+
+        int lastRow = Math.min((lastNearRow + 1) * blockSize, particlesPerRow);
+        int lastColumn = Math.min((lastNearColumn + 1) * blockSize, particlesPerRow);
+        double forceX = 0;
+        double forceY = 0;
+
+        for (int row = firstNearRow * blockSize; row < lastRow; row++) {
+            for (int index = row * particlesPerRow + firstNearColumn * blockSize; index < row * particlesPerRow + lastColumn; index++) {
+                double deltaX = x - this.x[index];
+                double deltaY = y - this.y[index];
+                double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                double chargeOverDistance = this.charge[index] * inverseDistance;
+                double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+                forceX += deltaX * magnitude;
+                forceY += deltaY * magnitude;
+                potential += chargeOverDistance;
+            }
+        }
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = (force[0] + forceX) * factor;
+        force[1] = (force[1] + forceY) * factor;
+
+        return potential * factor;
+    }
+
+    private int clamp(int block) {
+        return Math.max(0, Math.min(block, blocksPerRow - 1));
+    }
+}
@@ -0,0 +1,149 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Periodic snapshot of a running Simulation: a Header with the run configuration and the trajectory file length
+// at the time of the snapshot, followed by the loop counters, the projectile and the integrator state. Snapshots
+// replace the previous one atomically, so a crash while writing leaves the last complete one in place.
+// forceMode is ForceProviders.describe of the run's force mode, so a resume under other physics is refused.
+// seed is the one that drew the run's initial conditions, or null; it travels in the header so a resumed run can
+// still record it in static.txt
+public record Checkpoint(Path path, long interval, boolean resume, Path outputPath, String forceMode, Long seed) {
+    public static final int MAGIC = 0x4d44434b;
+    public static final int VERSION = 4;
+
+    public record Header(int particlesPerRow, double distanceBetweenParticles, double initialHeight, double initialSpeed,
+                         double charge, double mass, double stepSize, int saveFrequency, String forceMode,
+                         IntegratorSettings integrator, Long seed, long outputLength) {
+    }
+
+    // null unless checkpointFile is set
+    public static Checkpoint fromProperties(String outputFileName) {
+        return from(Configuration.fromSystemProperties(), outputFileName);
+    }
+
+    public static Checkpoint from(Configuration configuration, String outputFileName) {
+        String checkpointFile = configuration.get("checkpointFile");
+        if (checkpointFile == null) {
+            return null;
+        }
+
+        long interval = configuration.getLong("checkpointInterval", 1000000);
+        if (interval < 1) {
+            throw new IllegalArgumentException("checkpointInterval must be at least 1, got " + interval);
+        }
+
+        return new Checkpoint(Path.of(checkpointFile),
+                interval,
+                configuration.getBoolean("resume", false),
+                Path.of(outputFileName),
+                ForceProviders.describe(configuration.getString("forceMode", "direct"), configuration),
+                null);
+    }
+
+    public Checkpoint withSeed(Long seed) {
+        return new Checkpoint(path, interval, resume, outputPath, forceMode, seed);
+    }
+
+    // resume=true before the first snapshot exists starts a fresh run, so a job killed early restarts with the same command
+    public boolean canResume() {
+        return resume && Files.exists(path);
+    }
+
+    public interface StateWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    public void write(Header header, StateWriter state) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        // forced to disk before the rename, otherwise a crash can leave the new name pointing at unwritten data
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(header.particlesPerRow());
+            output.writeDouble(header.distanceBetweenParticles());
+            output.writeDouble(header.initialHeight());
+            output.writeDouble(header.initialSpeed());
+            output.writeDouble(header.charge());
+            output.writeDouble(header.mass());
+            output.writeDouble(header.stepSize());
+            output.writeInt(header.saveFrequency());
+            output.writeUTF(header.forceMode());
+            IntegratorSettings integrator = header.integrator();
+            output.writeUTF(integrator.method());
+            output.writeDouble(integrator.relativeTolerance());
+            output.writeDouble(integrator.absoluteTolerance());
+            output.writeDouble(integrator.minStepSize());
+            output.writeDouble(integrator.maxStepSize());
+            output.writeInt(integrator.innerSteps());
+            output.writeDouble(integrator.nearRadius());
+            output.writeDouble(integrator.switchingWidth());
+            output.writeBoolean(header.seed() != null);
+            output.writeLong(header.seed() != null ? header.seed() : 0);
+            output.writeLong(header.outputLength());
+            state.write(output);
+            output.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // the caller reads the header first and then the state in the order it was written
+    public DataInputStream open() throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    }
+
+    public static Header readHeader(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " simulation checkpoint");
+        }
+
+        return new Header(input.readInt(), input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble(),
+                input.readDouble(), input.readDouble(), input.readInt(), input.readUTF(),
+                new IntegratorSettings(input.readUTF(), input.readDouble(), input.readDouble(), input.readDouble(),
+                        input.readDouble(), input.readInt(), input.readDouble(), input.readDouble()),
+                readSeed(input), input.readLong());
+    }
+
+    private static Long readSeed(DataInputStream input) throws IOException {
+        boolean present = input.readBoolean();
+        long seed = input.readLong();
+        return present ? Long.valueOf(seed) : null;
+    }
+
+    public Header readHeader() throws IOException {
+        try (DataInputStream input = open()) {
+            return readHeader(input);
+        }
+    }
+
+    // drops whatever was written to the trajectory after the snapshot, so appending continues it seamlessly; a
+    // trajectory shorter than the snapshot lost rows it counts, and appending to it would leave a silent gap
+    public void truncateOutput(Header header) throws IOException {
+        if (Files.notExists(outputPath)) {
+            throw new IOException("Cannot resume from " + path + ": the trajectory " + outputPath + " is missing");
+        }
+        try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.WRITE)) {
+            if (channel.size() < header.outputLength()) {
+                throw new IOException("Cannot resume from " + path + ": " + outputPath + " is " + channel.size()
+                        + " bytes long but the snapshot was taken at " + header.outputLength());
+            }
+            channel.truncate(header.outputLength());
+        }
+    }
+}
@@ -2,4 +2,5 @@ package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
 
 public class Constants {
     public static final double COULOMB_CONSTANT = Math.pow(10, 10);
+    public static final double BOLTZMANN_CONSTANT = 1.380649e-23;
 }
@@ -0,0 +1,216 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+// Finds the first point inside a step where the projectile leaves the box or comes within dCut of a lattice
+// site. The path over the step is the cubic Hermite interpolant of the end positions and velocities, so the
+// crossing fraction comes from bisection on that interpolant instead of from the end of the step. Sites sit on the
+// fixed lattice unless a SiteDistance is given, as for the moving sites of NBodySimulation.
+final class CrossingDetector {
+    private static final int SAMPLES = 16;
+    private static final int BISECTIONS = 52;
+    private static final int GOLDEN_SECTIONS = 40;
+    private static final double INVERSE_GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+
+    private final double distanceBetweenParticles;
+    private final double boxWidth;
+    private final double boxHeight;
+    private final double dCut;
+    private final SiteDistance siteDistance;
+
+    // x(s) = x0 + x1 s + x2 s^2 + x3 s^3 over s in [0, 1], likewise for y; velocities are the derivative / stepSize
+    private double x0, x1, x2, x3;
+    private double y0, y1, y2, y3;
+    private double stepSize;
+    private double fraction;
+    private double siteReach;
+    // bound on how fast, per unit of s, the distance to the closest site can change over the current step
+    private double distanceRate;
+    private final double[] sampledDistances = new double[SAMPLES + 1];
+
+    // distance from the projectile at (x, y), fraction s into the step, to the closest site
+    interface SiteDistance {
+        double get(double x, double y, double s);
+    }
+
+    CrossingDetector(double distanceBetweenParticles, double boxWidth, double boxHeight, double dCut) {
+        this(distanceBetweenParticles, boxWidth, boxHeight, dCut, (x, y, s) -> getNearestSiteDistance(x, y, distanceBetweenParticles));
+    }
+
+    CrossingDetector(double distanceBetweenParticles, double boxWidth, double boxHeight, double dCut, SiteDistance siteDistance) {
+        this.distanceBetweenParticles = distanceBetweenParticles;
+        this.boxWidth = boxWidth;
+        this.boxHeight = boxHeight;
+        this.dCut = dCut;
+        this.siteDistance = siteDistance;
+    }
+
+    // distance from (x, y) to the closest lattice site, with the same mirrored |x| and unbounded rows and
+    // columns as the modulus arithmetic in Simulation.getStatus
+    static double getNearestSiteDistance(double x, double y, double distanceBetweenParticles) {
+        double xModulus = Math.abs(x) % distanceBetweenParticles;
+        double yModulus = Math.abs(y) % distanceBetweenParticles;
+        double deltaX = Math.min(xModulus, distanceBetweenParticles - xModulus);
+        double deltaY = Math.min(yModulus, distanceBetweenParticles - yModulus);
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+    }
+
+    private double getSiteDistance(double s) {
+        return siteDistance.get(getX(s), getY(s), s);
+    }
+
+    // how far any site can move during the next step; the fixed lattice keeps the default 0
+    void setSiteReach(double siteReach) {
+        this.siteReach = siteReach;
+    }
+
+    // The step starts at a state that is known not to be finished. Returns NOT_FINISHED or the first event,
+    // whose position along the step is then available from getFraction and interpolate.
+    SimulationStatus detect(double startX, double startY, double startVx, double startVy,
+                            double endX, double endY, double endVx, double endVy, double stepSize) {
+        this.stepSize = stepSize;
+        this.x0 = startX;
+        this.x1 = stepSize * startVx;
+        this.x2 = 3 * (endX - startX) - stepSize * (2 * startVx + endVx);
+        this.x3 = 2 * (startX - endX) + stepSize * (startVx + endVx);
+        this.y0 = startY;
+        this.y1 = stepSize * startVy;
+        this.y2 = 3 * (endY - startY) - stepSize * (2 * startVy + endVy);
+        this.y3 = 2 * (startY - endY) + stepSize * (startVy + endVy);
+
+        // no point of the path is further than reach from the start, no site further than siteReach, and the
+        // nearest-site distance is 1-Lipschitz, so most steps are settled by these two checks alone
+        double reachX = Math.abs(x1) + Math.abs(x2) + Math.abs(x3);
+        double reachY = Math.abs(y1) + Math.abs(y2) + Math.abs(y3);
+        double reach = Math.sqrt(reachX * reachX + reachY * reachY);
+        // |d/ds| of a cubic with these coefficients is at most 3 times the sum of their magnitudes
+        distanceRate = 3 * (reach + siteReach);
+        boolean mayLeave = startX - reach + distanceBetweenParticles < 0 || startX + reach > boxWidth
+                || startY - reach < 0 || startY + reach > boxHeight;
+        boolean mayBeAbsorbed = siteDistance.get(startX, startY, 0) - reach - siteReach < dCut;
+
+        if (!mayLeave && !mayBeAbsorbed) {
+            return SimulationStatus.NOT_FINISHED;
+        }
+
+        SimulationStatus status = SimulationStatus.NOT_FINISHED;
+        fraction = 1;
+        if (mayLeave) {
+            status = findExit();
+        }
+        if (mayBeAbsorbed && findAbsorption(status == SimulationStatus.NOT_FINISHED ? 1 : fraction)) {
+            status = SimulationStatus.ABSORBED;
+        }
+        return status;
+    }
+
+    double getFraction() {
+        return fraction;
+    }
+
+    // writes (x, y, vx, vy) at fraction s of the step
+    void interpolate(double s, double[] state) {
+        state[0] = x0 + s * (x1 + s * (x2 + s * x3));
+        state[1] = y0 + s * (y1 + s * (y2 + s * y3));
+        state[2] = (x1 + s * (2 * x2 + s * 3 * x3)) / stepSize;
+        state[3] = (y1 + s * (2 * y2 + s * 3 * y3)) / stepSize;
+    }
+
+    private double getX(double s) {
+        return x0 + s * (x1 + s * (x2 + s * x3));
+    }
+
+    private double getY(double s) {
+        return y0 + s * (y1 + s * (y2 + s * y3));
+    }
+
+    private SimulationStatus getBoundaryStatus(double s) {
+        double x = getX(s);
+        double y = getY(s);
+        if (Double.compare(x + distanceBetweenParticles, 0.0) < 0) return SimulationStatus.LEFT_ESCAPED;
+        if (Double.compare(x, boxWidth) > 0) return SimulationStatus.RIGHT_ESCAPED;
+        if (Double.compare(y, 0.0) < 0) return SimulationStatus.BOTTOM_ESCAPED;
+        if (Double.compare(y, boxHeight) > 0) return SimulationStatus.TOP_ESCAPED;
+        return SimulationStatus.NOT_FINISHED;
+    }
+
+    // first sample outside the box, then bisection between it and the last sample inside
+    private SimulationStatus findExit() {
+        double inside = 0;
+        for (int i = 1; i <= SAMPLES; i++) {
+            double s = (double) i / SAMPLES;
+            if (getBoundaryStatus(s) == SimulationStatus.NOT_FINISHED) {
+                inside = s;
+                continue;
+            }
+
+            double outside = s;
+            for (int j = 0; j < BISECTIONS; j++) {
+                double middle = 0.5 * (inside + outside);
+                if (getBoundaryStatus(middle) == SimulationStatus.NOT_FINISHED) {
+                    inside = middle;
+                } else {
+                    outside = middle;
+                }
+            }
+            fraction = outside;
+            return getBoundaryStatus(outside);
+        }
+        return SimulationStatus.NOT_FINISHED;
+    }
+
+    // Samples the distance along the step, then refines, earliest first, every interval between samples where the
+    // distance could dip inside dCut given how fast it can change, so a pass between samples is caught even when
+    // another approach in the same step comes closer at the samples; the entry point is then found by bisection.
+    // Only crossings before limit count.
+    private boolean findAbsorption(double limit) {
+        double sampleWidth = limit / SAMPLES;
+        int inside = -1;
+        for (int i = 0; i <= SAMPLES && inside < 0; i++) {
+            sampledDistances[i] = getSiteDistance(i * sampleWidth);
+            if (sampledDistances[i] < dCut) {
+                inside = i;
+            }
+        }
+
+        int intervals = inside < 0 ? SAMPLES : inside - 1;
+        for (int i = 0; i < intervals; i++) {
+            double lowerBound = 0.5 * (sampledDistances[i] + sampledDistances[i + 1] - distanceRate * sampleWidth);
+            if (lowerBound < dCut && refineAbsorption(i * sampleWidth, (i + 1) * sampleWidth)) {
+                return true;
+            }
+        }
+        return inside >= 0 && bisectAbsorption(Math.max(0, (inside - 1) * sampleWidth), inside * sampleWidth);
+    }
+
+    // golden-section search for the closest approach in [low, high], whose ends are known to be outside dCut
+    private boolean refineAbsorption(double low, double high) {
+        double outside = low;
+        for (int i = 0; i < GOLDEN_SECTIONS; i++) {
+            double left = high - INVERSE_GOLDEN_RATIO * (high - low);
+            double right = low + INVERSE_GOLDEN_RATIO * (high - low);
+            if (getSiteDistance(left) < getSiteDistance(right)) {
+                high = right;
+            } else {
+                low = left;
+            }
+        }
+
+        double middle = 0.5 * (low + high);
+        if (getSiteDistance(middle) >= dCut) {
+            return false;
+        }
+        return bisectAbsorption(outside, middle);
+    }
+
+    private boolean bisectAbsorption(double outside, double inside) {
+        for (int j = 0; j < BISECTIONS; j++) {
+            double middle = 0.5 * (outside + inside);
+            if (getSiteDistance(middle) < dCut) {
+                inside = middle;
+            } else {
+                outside = middle;
+            }
+        }
+        fraction = inside;
+        return true;
+    }
+}
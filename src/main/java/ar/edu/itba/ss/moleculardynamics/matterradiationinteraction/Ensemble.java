@@ -0,0 +1,168 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+import ar.edu.itba.ss.metrics.AggregateMetrics;
+import ar.edu.itba.ss.metrics.SimulationMetrics;
+
+import javax.management.ObjectName;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// With metrics=true the beans are named after the ensemble-<n> instance, so several ensembles can share a JVM;
+// close unregisters them.
+public class Ensemble implements AutoCloseable {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final LatticeCache lattices;
+    private final Configuration configuration;
+    // one entry per worker thread that has run a simulation, only when metrics=true
+    private final ConcurrentHashMap<Thread, SimulationMetrics> workerMetrics = new ConcurrentHashMap<>();
+    private final boolean metricsEnabled;
+    private final String metricsName;
+    private final List<ObjectName> registeredMetrics = new CopyOnWriteArrayList<>();
+
+    public Ensemble(LatticeCache lattices, Configuration configuration) {
+        this.lattices = lattices;
+        this.configuration = configuration;
+        this.metricsEnabled = SimulationMetrics.isEnabled(configuration);
+        this.metricsName = "ensemble-" + INSTANCES.incrementAndGet();
+        if (metricsEnabled) {
+            registeredMetrics.add(SimulationMetrics.register(new AggregateMetrics(workerMetrics.values()), "Ensemble", metricsName));
+        }
+    }
+
+    // every run is one combination of the sweep keys of SimulationConfig.batch, e.g. initialSpeeds=5000,50000
+    // integrators=gear,dormandPrince; runs on the same lattice share it through the LatticeCache
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+
+        Configuration configuration = Configuration.load(args);
+        String outputFileName = configuration.getString("outputFileName", "ensemble.txt");
+        int parallelism = configuration.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+
+        List<SimulationConfig> runs = SimulationConfig.batch(configuration);
+        System.out.println("Runs: " + runs.size());
+        System.out.println("Parallelism: " + parallelism);
+        System.out.println("Integrators: " + runs.stream().map(run -> run.integrator().method()).distinct().toList());
+
+        LatticeCache lattices = new LatticeCache(configuration);
+        try (Ensemble ensemble = new Ensemble(lattices, configuration)) {
+            long startTime = System.nanoTime();
+            List<SimulationResult> results = ensemble.run(runs, parallelism);
+            System.out.println("Elapsed: " + (System.nanoTime() - startTime) / 1e9 + " s");
+            System.out.println("Lattices: " + lattices.size());
+            System.out.println("Force evaluations: " + results.stream().mapToLong(SimulationResult::forceEvaluations).sum());
+
+            printResults(runs, results, outputFileName);
+            ensemble.printWorkerMetrics();
+        }
+    }
+
+    public List<SimulationResult> run(List<SimulationConfig> runs, int parallelism) throws InterruptedException, ExecutionException {
+        List<Callable<SimulationResult>> tasks = new ArrayList<>(runs.size());
+        for (SimulationConfig run : runs) {
+            tasks.add(() -> run(run));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<SimulationResult> results = new ArrayList<>(runs.size());
+            for (Future<SimulationResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public SimulationResult run(SimulationConfig run) {
+        return run.createSimulation(lattices).run(run.stepSize(), run.integrator(), getWorkerMetrics());
+    }
+
+    private SimulationMetrics getWorkerMetrics() {
+        if (!metricsEnabled) {
+            return null;
+        }
+        return workerMetrics.computeIfAbsent(Thread.currentThread(), thread -> {
+            SimulationMetrics metrics = new SimulationMetrics(thread.getName(), configuration.getLong("metricsInterval", 1000));
+            registeredMetrics.add(SimulationMetrics.register(metrics, "EnsembleWorker", metricsName + "/" + thread.getName()));
+            return metrics;
+        });
+    }
+
+    @Override
+    public void close() {
+        for (ObjectName objectName : registeredMetrics) {
+            SimulationMetrics.unregister(objectName);
+        }
+        registeredMetrics.clear();
+    }
+
+    // busiest worker first; a busy time well above the mean points at a straggler
+    public void printWorkerMetrics() {
+        if (workerMetrics.isEmpty()) {
+            return;
+        }
+
+        List<SimulationMetrics> workers = new ArrayList<>(workerMetrics.values());
+        workers.sort(Comparator.comparingDouble(SimulationMetrics::getBusySeconds).reversed());
+        double meanBusySeconds = workers.stream().mapToDouble(SimulationMetrics::getBusySeconds).average().orElse(0);
+
+        // workers that ran nothing, or finished within the timer resolution, have no busy time to divide by
+        for (SimulationMetrics worker : workers) {
+            double busySeconds = worker.getBusySeconds();
+            System.out.printf("Worker %s: runs %d, steps %d, force evaluations %d, busy %.3f s (%.2fx mean), %.0f steps/s%n",
+                    worker.getName(), worker.getCompletedRuns(), worker.getSteps(), worker.getForceEvaluations(), busySeconds,
+                    meanBusySeconds > 0 ? busySeconds / meanBusySeconds : 0, busySeconds > 0 ? worker.getSteps() / busySeconds : 0);
+        }
+    }
+
+    // same row layout as output_files/ej2_2.txt, with the extra columns appended; the run configs add the
+    // integrator and lattice size at the end
+    public static void printResults(List<SimulationConfig> runs, List<SimulationResult> results, String fileName) throws IOException {
+        printResults(runs, results, null, fileName);
+    }
+
+    // seeds, if not null, adds the seed each run's initial conditions were drawn from as the last column
+    public static void printResults(List<SimulationConfig> runs, List<SimulationResult> results, List<Long> seeds, String fileName) throws IOException {
+        PrintWriter printWriter = new PrintWriter(new FileWriter(fileName));
+
+        for (int i = 0; i < runs.size(); i++) {
+            SimulationConfig run = runs.get(i);
+            SimulationResult result = results.get(i);
+            printWriter.print(run.initialSpeed() + " " + run.initialHeightRatio() + " " + result.trajectoryLength() + " " + result.status()
+                    + " " + result.steps() + " " + result.energyDrift() + " " + run.stepSize() + " " + result.forceEvaluations() + " " + result.time()
+                    + " " + run.integrator().method() + " " + run.particlesPerRow() + (seeds != null ? " " + seeds.get(i) : "") + "\n");
+        }
+
+        printWriter.close();
+    }
+
+    static double[] parseList(String values) {
+        String[] tokens = values.split(",");
+        double[] parsed = new double[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            parsed[i] = Double.parseDouble(tokens[i].trim());
+        }
+        return parsed;
+    }
+
+    static double[] linspace(double start, double end, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = count == 1 ? start : start + (end - start) * i / (count - 1);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,252 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+// Tabulates the lattice potential on a grid of samplesPerCell x samplesPerCell tiles inside every lattice
+// cell and interpolates it with bicubic Hermite patches, so the force is the exact gradient of the
+// interpolant. The four sites at the corners of each cell are left out of its table and added exactly,
+// which keeps the 1/r singularity (and everything dCut depends on) out of the interpolation.
+public class FieldGridForceProvider implements ForceProvider {
+    private static final int MAGIC = 0x4d444647;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int VALUES_PER_NODE = 4;
+    // one extra cell on every side covers the projectile's start at x = -d and the escape boundaries
+    private static final int MARGIN = 1;
+
+    private final MatterParticles matterParticles;
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+    private final int particlesPerRow;
+    private final double distanceBetweenParticles;
+    private final int samplesPerCell;
+    private final int cellsPerRow;
+    private final int nodesPerCell;
+    private final double nodeSpacing;
+    // cell-major: potential, d/dx, d/dy and d2/dxdy per node, per unit charge and without the Coulomb constant
+    private final DoubleBuffer table;
+
+    private FieldGridForceProvider(MatterParticles matterParticles, int samplesPerCell, DoubleBuffer table) {
+        this.matterParticles = matterParticles;
+        this.x = matterParticles.getXs();
+        this.y = matterParticles.getYs();
+        this.charge = matterParticles.getCharges();
+        this.particlesPerRow = matterParticles.getParticlesPerRow();
+        this.distanceBetweenParticles = matterParticles.getDistanceBetweenParticles();
+        this.samplesPerCell = samplesPerCell;
+        this.cellsPerRow = particlesPerRow + MARGIN;
+        this.nodesPerCell = (samplesPerCell + 1) * (samplesPerCell + 1);
+        this.nodeSpacing = distanceBetweenParticles / samplesPerCell;
+        this.table = table;
+    }
+
+    public static FieldGridForceProvider build(MatterParticles matterParticles, int samplesPerCell) {
+        int cellsPerRow = matterParticles.getParticlesPerRow() + MARGIN;
+        int nodesPerCell = (samplesPerCell + 1) * (samplesPerCell + 1);
+        double[] values = new double[cellsPerRow * cellsPerRow * nodesPerCell * VALUES_PER_NODE];
+
+        FieldGridForceProvider provider = new FieldGridForceProvider(matterParticles, samplesPerCell, DoubleBuffer.wrap(values));
+        IntStream.range(0, cellsPerRow * cellsPerRow).parallel().forEach(cell -> provider.buildCell(cell, values));
+
+        return provider;
+    }
+
+    // rejects a file built for another lattice or sample count, or whose size does not match its header
+    public static FieldGridForceProvider load(Path path, MatterParticles matterParticles, int expectedSamplesPerCell) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(path + " is not a field grid file");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = buffer.getInt(0);
+            int version = buffer.getInt(4);
+            int particlesPerRow = buffer.getInt(8);
+            int samplesPerCell = buffer.getInt(12);
+            double distanceBetweenParticles = buffer.getDouble(16);
+            double charge = buffer.getDouble(24);
+
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException(path + " is not a field grid file");
+            }
+            if (particlesPerRow != matterParticles.getParticlesPerRow()
+                    || distanceBetweenParticles != matterParticles.getDistanceBetweenParticles()
+                    || charge != matterParticles.getCharges()[0]) {
+                throw new IOException(path + " was built for a different lattice");
+            }
+            if (samplesPerCell != expectedSamplesPerCell) {
+                throw new IOException(path + " has " + samplesPerCell + " samples per cell, not the configured " + expectedSamplesPerCell);
+            }
+            long cells = (long) (particlesPerRow + MARGIN) * (particlesPerRow + MARGIN);
+            long expectedSize = HEADER_SIZE + cells * (samplesPerCell + 1) * (samplesPerCell + 1) * VALUES_PER_NODE * Double.BYTES;
+            if (channel.size() != expectedSize) {
+                throw new IOException(path + " is " + channel.size() + " bytes long, expected " + expectedSize);
+            }
+
+            DoubleBuffer table = buffer.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            return new FieldGridForceProvider(matterParticles, samplesPerCell, table);
+        }
+    }
+
+    // written next to the target and moved into place, so readers never map a half-written grid
+    public void save(Path path) throws IOException {
+        long size = HEADER_SIZE + (long) table.capacity() * Double.BYTES;
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(particlesPerRow).putInt(samplesPerCell);
+            buffer.putDouble(distanceBetweenParticles).putDouble(charge[0]);
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(table.duplicate().clear());
+            buffer.force();
+            channel.force(true);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void buildCell(int cell, double[] values) {
+        int cellRow = cell / cellsPerRow - MARGIN;
+        int cellColumn = cell % cellsPerRow - MARGIN;
+
+        for (int a = 0; a <= samplesPerCell; a++) {
+            for (int b = 0; b <= samplesPerCell; b++) {
+                double nodeX = cellRow * distanceBetweenParticles + a * nodeSpacing;
+                double nodeY = cellColumn * distanceBetweenParticles + b * nodeSpacing;
+                double potential = 0;
+                double potentialX = 0;
+                double potentialY = 0;
+                double potentialXY = 0;
+
+                for (int i = 0; i < x.length; i++) {
+                    if (isCorner(i, cellRow, cellColumn)) {
+                        continue;
+                    }
+                    double deltaX = nodeX - x[i];
+                    double deltaY = nodeY - y[i];
+                    double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                    double inverseDistance2 = inverseDistance * inverseDistance;
+                    double chargeOverDistance3 = charge[i] * inverseDistance * inverseDistance2;
+                    potential += charge[i] * inverseDistance;
+                    potentialX -= chargeOverDistance3 * deltaX;
+                    potentialY -= chargeOverDistance3 * deltaY;
+                    potentialXY += 3 * chargeOverDistance3 * inverseDistance2 * deltaX * deltaY;
+                }
+
+                int offset = ((cell * (samplesPerCell + 1) + a) * (samplesPerCell + 1) + b) * VALUES_PER_NODE;
+                values[offset] = potential;
+                values[offset + 1] = potentialX;
+                values[offset + 2] = potentialY;
+                values[offset + 3] = potentialXY;
+            }
+        }
+    }
+
+    private boolean isCorner(int index, int cellRow, int cellColumn) {
+        int row = index / particlesPerRow;
+        int column = index % particlesPerRow;
+        return (row == cellRow || row == cellRow + 1) && (column == cellColumn || column == cellColumn + 1);
+    }
+
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        double cellX = x / distanceBetweenParticles + MARGIN;
+        double cellY = y / distanceBetweenParticles + MARGIN;
+        int cell0 = (int) Math.floor(cellX);
+        int cell1 = (int) Math.floor(cellY);
+
+        if (cellX < 0 || cellY < 0 || cell0 >= cellsPerRow || cell1 >= cellsPerRow) {
+            return matterParticles.getTotalElectrostaticForceAndPotential(x, y, charge, force);
+        }
+
+        double u = (cellX - cell0) * samplesPerCell;
+        double v = (cellY - cell1) * samplesPerCell;
+        int a = Math.min((int) u, samplesPerCell - 1);
+        int b = Math.min((int) v, samplesPerCell - 1);
+        double t = u - a;
+        double s = v - b;
+
+        double t2 = t * t;
+        double t3 = t2 * t;
+        double s2 = s * s;
+        double s3 = s2 * s;
+
+        // Hermite basis: h for values, g for slopes, d for derivatives, 0 and 1 for the near and far node
+        double h0T = 2 * t3 - 3 * t2 + 1;
+        double h1T = -2 * t3 + 3 * t2;
+        double g0T = t3 - 2 * t2 + t;
+        double g1T = t3 - t2;
+        double dh0T = 6 * t2 - 6 * t;
+        double dh1T = -dh0T;
+        double dg0T = 3 * t2 - 4 * t + 1;
+        double dg1T = 3 * t2 - 2 * t;
+
+        double h0S = 2 * s3 - 3 * s2 + 1;
+        double h1S = -2 * s3 + 3 * s2;
+        double g0S = s3 - 2 * s2 + s;
+        double g1S = s3 - s2;
+        double dh0S = 6 * s2 - 6 * s;
+        double dh1S = -dh0S;
+        double dg0S = 3 * s2 - 4 * s + 1;
+        double dg1S = 3 * s2 - 2 * s;
+
+        int node = (cell0 * cellsPerRow + cell1) * (samplesPerCell + 1) * (samplesPerCell + 1) + a * (samplesPerCell + 1) + b;
+        int offset00 = node * VALUES_PER_NODE;
+        int offset01 = offset00 + VALUES_PER_NODE;
+        int offset10 = offset00 + (samplesPerCell + 1) * VALUES_PER_NODE;
+        int offset11 = offset10 + VALUES_PER_NODE;
+
+        double potential = patch(offset00, h0T, g0T, h0S, g0S) + patch(offset01, h0T, g0T, h1S, g1S)
+                + patch(offset10, h1T, g1T, h0S, g0S) + patch(offset11, h1T, g1T, h1S, g1S);
+        double potentialX = patch(offset00, dh0T, dg0T, h0S, g0S) + patch(offset01, dh0T, dg0T, h1S, g1S)
+                + patch(offset10, dh1T, dg1T, h0S, g0S) + patch(offset11, dh1T, dg1T, h1S, g1S);
+        double potentialY = patch(offset00, h0T, g0T, dh0S, dg0S) + patch(offset01, h0T, g0T, dh1S, dg1S)
+                + patch(offset10, h1T, g1T, dh0S, dg0S) + patch(offset11, h1T, g1T, dh1S, dg1S);
+
+        double forceX = -potentialX / nodeSpacing;
+        double forceY = -potentialY / nodeSpacing;
+
+        int cellRow = cell0 - MARGIN;
+        int cellColumn = cell1 - MARGIN;
+        for (int row = Math.max(cellRow, 0); row <= Math.min(cellRow + 1, particlesPerRow - 1); row++) {
+            for (int column = Math.max(cellColumn, 0); column <= Math.min(cellColumn + 1, particlesPerRow - 1); column++) {
+                int index = row * particlesPerRow + column;
+                double deltaX = x - this.x[index];
+                double deltaY = y - this.y[index];
+                double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                double chargeOverDistance = this.charge[index] * inverseDistance;
+                double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+                forceX += deltaX * magnitude;
+                forceY += deltaY * magnitude;
+                potential += chargeOverDistance;
+            }
+        }
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = forceX * factor;
+        force[1] = forceY * factor;
+
+        return potential * factor;
+    }
+
+    // contribution of one node, with the slopes scaled from per-length to per-tile units
+    private double patch(int offset, double valueBasisX, double slopeBasisX, double valueBasisY, double slopeBasisY) {
+        return table.get(offset) * valueBasisX * valueBasisY
+                + table.get(offset + 1) * nodeSpacing * slopeBasisX * valueBasisY
+                + table.get(offset + 2) * nodeSpacing * valueBasisX * slopeBasisY
+                + table.get(offset + 3) * nodeSpacing * nodeSpacing * slopeBasisX * slopeBasisY;
+    }
+}
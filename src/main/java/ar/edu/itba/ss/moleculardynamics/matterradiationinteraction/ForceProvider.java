@@ -0,0 +1,7 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+@FunctionalInterface
+public interface ForceProvider {
+    // fills force with the lattice force on a charge at (x, y) and returns its potential energy
+    double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force);
+}
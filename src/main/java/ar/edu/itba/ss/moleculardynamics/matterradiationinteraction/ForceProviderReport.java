@@ -0,0 +1,141 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+// compares a force mode against the direct scalar sum over random positions inside the box; also a parity check
+// that exits with status 1 when an error is above tolerance or the mode fell back to the scalar kernel
+public class ForceProviderReport {
+    // keeps the timed loops from being optimized away
+    private static volatile double blackhole;
+
+    // forceMode=tree sweeps the comma separated openingAngle values; buildMs is the time to create the provider.
+    // tolerance bounds both relative errors; it defaults to 1e-10 for the exact modes and is unchecked otherwise
+    public static void main(String[] args) throws IOException {
+        Configuration configuration = Configuration.load(args);
+        double charge = configuration.getDouble("charge", 1e-19);
+        double mass = configuration.getDouble("mass", 1e-27);
+        double distanceBetweenParticles = configuration.getDouble("distanceBetweenParticles", 1e-8);
+
+        String forceMode = configuration.getString("forceMode", "simd");
+        int samples = configuration.getInt("samples", 10000);
+        double[] rows = configuration.getDoubles("particlesPerRow", "16,64,256");
+        boolean tree = forceMode.equals("tree");
+        double tolerance = configuration.getDouble("tolerance", ForceProviders.isExact(forceMode) ? 1e-10 : Double.NaN);
+        int failures = 0;
+        String[] openingAngles = tree ? configuration.getStrings("openingAngle", "0.3,0.5,0.7,1") : new String[]{null};
+
+        System.out.println(tree
+                ? "rows openingAngle directNs providerNs speedup maxForceError maxPotentialError buildMs"
+                : "rows directNs providerNs speedup maxForceError maxPotentialError buildMs");
+
+        for (double row : rows) {
+            int particlesPerRow = (int) row;
+            MatterParticles matterParticles = new MatterParticles(particlesPerRow, distanceBetweenParticles, charge, mass);
+            double[][] positions = samplePositions(particlesPerRow, distanceBetweenParticles, samples);
+
+            for (String openingAngle : openingAngles) {
+                long buildStart = System.nanoTime();
+                ForceProvider provider = ForceProviders.create(forceMode, matterParticles,
+                        tree ? configuration.with("openingAngle", openingAngle) : configuration);
+                double buildMillis = (System.nanoTime() - buildStart) / 1e6;
+
+                if (provider == matterParticles && !forceMode.equals("direct")) {
+                    System.err.println("FAIL " + particlesPerRow + " rows: force mode " + forceMode + " fell back to the scalar kernel, nothing to compare");
+                    failures++;
+                    continue;
+                }
+
+                Report report = compare(matterParticles, provider, positions, charge);
+                if (tree) {
+                    System.out.printf("%d %s %.1f %.1f %.2f %.3e %.3e %.1f\n", particlesPerRow, openingAngle, report.directNanos(), report.providerNanos(),
+                            report.directNanos() / report.providerNanos(), report.maxForceError(), report.maxPotentialError(), buildMillis);
+                } else {
+                    System.out.printf("%d %.1f %.1f %.2f %.3e %.3e %.1f\n", particlesPerRow, report.directNanos(), report.providerNanos(),
+                            report.directNanos() / report.providerNanos(), report.maxForceError(), report.maxPotentialError(), buildMillis);
+                }
+
+                if (report.maxForceError() > tolerance || report.maxPotentialError() > tolerance) {
+                    System.err.println("FAIL " + particlesPerRow + " rows" + (tree ? ", openingAngle " + openingAngle : "")
+                            + ": error above tolerance " + tolerance);
+                    failures++;
+                }
+            }
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    public record Report(double directNanos, double providerNanos, double maxForceError, double maxPotentialError) {
+    }
+
+    // force errors are relative to the exact force at each point; potential errors are relative to the largest
+    // exact potential in the sample, since the alternating lattice makes the potential cross zero
+    public static Report compare(ForceProvider exact, ForceProvider provider, double[][] positions, double charge) {
+        double[] exactForce = new double[2];
+        double[] providerForce = new double[2];
+        double maxForceError = 0;
+        double maxPotentialError = 0;
+        double maxPotential = 0;
+
+        for (double[] position : positions) {
+            double exactPotential = exact.getTotalElectrostaticForceAndPotential(position[0], position[1], charge, exactForce);
+            double providerPotential = provider.getTotalElectrostaticForceAndPotential(position[0], position[1], charge, providerForce);
+
+            double forceError = Math.hypot(providerForce[0] - exactForce[0], providerForce[1] - exactForce[1]) / Math.hypot(exactForce[0], exactForce[1]);
+            double potentialError = Math.abs(providerPotential - exactPotential);
+
+            maxForceError = Math.max(maxForceError, forceError);
+            maxPotentialError = Math.max(maxPotentialError, potentialError);
+            maxPotential = Math.max(maxPotential, Math.abs(exactPotential));
+        }
+
+        return new Report(time(exact, positions, charge), time(provider, positions, charge), maxForceError, maxPotentialError / maxPotential);
+    }
+
+    // ns per evaluation, after a warm-up pass over the same positions
+    private static double time(ForceProvider provider, double[][] positions, double charge) {
+        double[] force = new double[2];
+        double sink = 0;
+
+        for (int pass = 0; pass < 3; pass++) {
+            for (double[] position : positions) {
+                sink += provider.getTotalElectrostaticForceAndPotential(position[0], position[1], charge, force);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (double[] position : positions) {
+            sink += provider.getTotalElectrostaticForceAndPotential(position[0], position[1], charge, force);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        blackhole = sink;
+
+        return (double) elapsed / positions.length;
+    }
+
+    // random positions in the lattice box that stay outside the absorption radius of every site
+    static double[][] samplePositions(int particlesPerRow, double distanceBetweenParticles, int samples) {
+        SplittableRandom random = new SplittableRandom(particlesPerRow);
+        double L = (particlesPerRow - 1) * distanceBetweenParticles;
+        double dCut = 0.01 * distanceBetweenParticles;
+        double[][] positions = new double[samples][];
+
+        for (int i = 0; i < samples; ) {
+            double x = random.nextDouble(-distanceBetweenParticles, L);
+            double y = random.nextDouble(0, L);
+            double deltaX = x - Math.rint(x / distanceBetweenParticles) * distanceBetweenParticles;
+            double deltaY = y - Math.rint(y / distanceBetweenParticles) * distanceBetweenParticles;
+            if (deltaX * deltaX + deltaY * deltaY > dCut * dCut) {
+                positions[i++] = new double[]{x, y};
+            }
+        }
+
+        return positions;
+    }
+}
@@ -0,0 +1,93 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ForceProviders {
+    private static final String VECTOR_PROVIDER_CLASS = "ar.edu.itba.ss.moleculardynamics.matterradiationinteraction.VectorForceProvider";
+
+    private ForceProviders() {
+    }
+
+    public static ForceProvider create(String forceMode, MatterParticles matterParticles) {
+        return create(forceMode, matterParticles, Configuration.fromSystemProperties());
+    }
+
+    public static ForceProvider create(String forceMode, MatterParticles matterParticles, Configuration configuration) {
+        return switch (forceMode) {
+            case "direct" -> matterParticles;
+            case "simd" -> createVectorProvider(matterParticles);
+            case "cell" -> new CellListForceProvider(matterParticles,
+                    configuration.getInt("cellBlockSize", 8),
+                    configuration.getInt("cellNearBlocks", 1));
+            case "grid" -> createFieldGridProvider(matterParticles, configuration);
+            case "tree" -> new BarnesHutForceProvider(matterParticles,
+                    configuration.getDouble("openingAngle", 0.5),
+                    configuration.getInt("treeLeafSize", 8));
+            case "lattice" -> new LatticeForceProvider(matterParticles,
+                    configuration.getInt("latticeOrder", 4),
+                    configuration.getInt("latticeNearWindow", 4),
+                    configuration.getInt("latticeMargin", 2));
+            default -> throw new IllegalArgumentException("Unknown force mode: " + forceMode);
+        };
+    }
+
+    // the force mode with every setting that changes its forces, e.g. "tree openingAngle=0.5 treeLeafSize=8"
+    public static String describe(String forceMode, Configuration configuration) {
+        return switch (forceMode) {
+            case "direct", "simd" -> forceMode;
+            case "cell" -> forceMode + " cellBlockSize=" + configuration.getInt("cellBlockSize", 8)
+                    + " cellNearBlocks=" + configuration.getInt("cellNearBlocks", 1);
+            case "grid" -> forceMode + " fieldGridSamples=" + configuration.getInt("fieldGridSamples", 8);
+            case "tree" -> forceMode + " openingAngle=" + configuration.getDouble("openingAngle", 0.5)
+                    + " treeLeafSize=" + configuration.getInt("treeLeafSize", 8);
+            case "lattice" -> forceMode + " latticeOrder=" + configuration.getInt("latticeOrder", 4)
+                    + " latticeNearWindow=" + configuration.getInt("latticeNearWindow", 4)
+                    + " latticeMargin=" + configuration.getInt("latticeMargin", 2);
+            default -> throw new IllegalArgumentException("Unknown force mode: " + forceMode);
+        };
+    }
+
+    public static boolean isExact(String forceMode) {
+        return forceMode.equals("direct") || forceMode.equals("simd");
+    }
+
+    // reuses fieldGridFile when it exists, failing if it does not match the lattice and fieldGridSamples, and
+    // otherwise builds the grid and saves it there
+    private static ForceProvider createFieldGridProvider(MatterParticles matterParticles, Configuration configuration) {
+        int samplesPerCell = configuration.getInt("fieldGridSamples", 8);
+        String fileName = configuration.get("fieldGridFile");
+
+        if (fileName == null) {
+            return FieldGridForceProvider.build(matterParticles, samplesPerCell);
+        }
+
+        Path path = Path.of(fileName);
+        try {
+            if (Files.exists(path)) {
+                return FieldGridForceProvider.load(path, matterParticles, samplesPerCell);
+            }
+            FieldGridForceProvider provider = FieldGridForceProvider.build(matterParticles, samplesPerCell);
+            provider.save(path);
+            return provider;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the SIMD kernel is only compiled with the 'vector' profile and only links with --add-modules jdk.incubator.vector
+    private static ForceProvider createVectorProvider(MatterParticles matterParticles) {
+        try {
+            return (ForceProvider) Class.forName(VECTOR_PROVIDER_CLASS)
+                    .getDeclaredConstructor(MatterParticles.class)
+                    .newInstance(matterParticles);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("SIMD force kernel unavailable (" + e + "), falling back to the scalar kernel");
+            return matterParticles;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+import ar.edu.itba.ss.odemethods.AdaptiveVectorOdeMethod;
+import ar.edu.itba.ss.odemethods.DormandPrinceMethod;
+import ar.edu.itba.ss.odemethods.MultipleTimeStepIntegrator;
+import ar.edu.itba.ss.odemethods.StepSizeController;
+import ar.edu.itba.ss.odemethods.VectorForce;
+import ar.edu.itba.ss.odemethods.VectorGearPredictorCorrector;
+import ar.edu.itba.ss.odemethods.VectorOdeMethod;
+
+// "gear" keeps the fixed step; "adaptiveGear" and "dormandPrince" adapt it within the tolerances. The absolute
+// tolerance is relative to the lattice spacing for positions and to the initial speed for velocities.
+// "respa" integrates the sites within nearRadius lattice spacings every step and the rest every innerSteps steps,
+// blending the two over the last switchingWidth spacings.
+public record IntegratorSettings(String method, double relativeTolerance, double absoluteTolerance, double minStepSize, double maxStepSize,
+                                 int innerSteps, double nearRadius, double switchingWidth) {
+    public static final IntegratorSettings FIXED_GEAR = new IntegratorSettings("gear", 0, 0, 0, 0, 1, 0, 0);
+
+    public static IntegratorSettings fromProperties() {
+        return from(Configuration.fromSystemProperties());
+    }
+
+    public static IntegratorSettings from(Configuration configuration) {
+        String method = configuration.getString("integrator", "gear");
+        if (!method.equals("gear") && !method.equals("adaptiveGear") && !method.equals("dormandPrince") && !method.equals("respa")) {
+            throw new IllegalArgumentException("Unknown integrator: " + method);
+        }
+
+        return new IntegratorSettings(method,
+                configuration.getDouble("relativeTolerance", 1e-6),
+                configuration.getDouble("absoluteTolerance", 1e-6),
+                configuration.getDouble("minStepSize", 1e-19),
+                configuration.getDouble("maxStepSize", 1e-13),
+                configuration.getInt("innerSteps", 10),
+                configuration.getDouble("nearRadius", 2),
+                configuration.getDouble("switchingWidth", 1.5));
+    }
+
+    public boolean isAdaptive() {
+        return method.equals("adaptiveGear") || method.equals("dormandPrince");
+    }
+
+    public VectorOdeMethod createMethod(double[] r0, double[] v0, VectorForce force, MatterParticles matterParticles, double charge, double mass) {
+        if (!method.equals("respa")) {
+            return createAdaptiveMethod(r0, v0, force, mass);
+        }
+
+        double outerRadius = nearRadius * matterParticles.getDistanceBetweenParticles();
+        double innerRadius = Math.max(0, nearRadius - switchingWidth) * matterParticles.getDistanceBetweenParticles();
+        VectorForce nearForce = (r, v, f) -> matterParticles.getNearElectrostaticForceAndPotential(r[0], r[1], charge, innerRadius, outerRadius, f);
+
+        double[] near = new double[r0.length];
+        VectorForce farForce = (r, v, f) -> {
+            force.apply(r, v, f);
+            nearForce.apply(r, v, near);
+            for (int i = 0; i < f.length; i++) {
+                f[i] -= near[i];
+            }
+        };
+
+        return new MultipleTimeStepIntegrator(r0, v0, nearForce, farForce, mass, innerSteps);
+    }
+
+    public AdaptiveVectorOdeMethod createAdaptiveMethod(double[] r0, double[] v0, VectorForce force, double mass) {
+        return method.equals("dormandPrince")
+                ? new DormandPrinceMethod(r0, v0, force, mass)
+                : new VectorGearPredictorCorrector(r0, v0, force, mass, false);
+    }
+
+    public StepSizeController createController(double initialStepSize, double distanceBetweenParticles, double initialSpeed) {
+        return new StepSizeController(initialStepSize, minStepSize, maxStepSize, relativeTolerance,
+                absoluteTolerance * distanceBetweenParticles, absoluteTolerance * Math.abs(initialSpeed));
+    }
+}
@@ -0,0 +1,32 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Builds each distinct lattice and its force provider once; every run on that lattice shares them read-only
+public class LatticeCache {
+    public record Lattice(MatterParticles matterParticles, ForceProvider forceProvider) {
+    }
+
+    private final Configuration configuration;
+    private final ConcurrentHashMap<SimulationConfig.LatticeKey, Lattice> lattices = new ConcurrentHashMap<>();
+
+    // configuration supplies the force provider tuning (cellBlockSize, fieldGridFile, ...)
+    public LatticeCache(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    public Lattice get(SimulationConfig config) {
+        return lattices.computeIfAbsent(config.getLatticeKey(), this::build);
+    }
+
+    private Lattice build(SimulationConfig.LatticeKey key) {
+        MatterParticles matterParticles = new MatterParticles(key.particlesPerRow(), key.distanceBetweenParticles(), key.charge(), key.mass());
+        return new Lattice(matterParticles, ForceProviders.create(key.forceMode(), matterParticles, configuration));
+    }
+
+    public int size() {
+        return lattices.size();
+    }
+}
@@ -0,0 +1,234 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import java.util.stream.IntStream;
+
+// Force provider for the regular lattice built by MatterParticles: sites at (d i, d j) with charge
+// q0 rowSign^i columnSign^j (a checkerboard for an even number of rows, stripes for an odd one). The plane is cut
+// into lattice cells; sites within nearWindow cells of the cell holding the evaluation point are summed exactly
+// and every other site enters through a Taylor expansion of 1 / r about the cell center, whose coefficients are
+// precomputed per cell. The potential is a polynomial in the offset from the center and the force its gradient.
+// Because the lattice is translation invariant up to the sign pattern, the far coefficients of every cell are
+// rectangle sums of one table indexed by the site-to-cell offset, so they all come from summed-area tables built
+// once per coefficient. Cells up to margin beyond the lattice are tabulated too (the projectile starts one
+// spacing to the left of it); further out the provider falls back to the direct sum.
+public class LatticeForceProvider implements ForceProvider {
+    private static final int MAX_ORDER = 8;
+
+    private final MatterParticles matterParticles;
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+    private final int particlesPerRow;
+    private final double distanceBetweenParticles;
+    private final int order;
+    private final int nearWindow;
+    private final int margin;
+    private final int cellsPerRow;
+    private final int coefficientCount;
+    // far-field Taylor coefficients of cell (a, b), in lattice units, at ((a + margin) * cellsPerRow + b + margin) * coefficientCount
+    private final double[] coefficients;
+
+    public LatticeForceProvider(MatterParticles matterParticles, int order, int nearWindow, int margin) {
+        if (order < 1 || order > MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be between 1 and " + MAX_ORDER);
+        }
+        if (nearWindow < 1 || margin < 0) {
+            throw new IllegalArgumentException("nearWindow must be positive and margin non-negative");
+        }
+        if (matterParticles.getParticlesPerRow() < 2) {
+            throw new IllegalArgumentException("The lattice needs at least 2 rows");
+        }
+        this.matterParticles = matterParticles;
+        this.x = matterParticles.getXs();
+        this.y = matterParticles.getYs();
+        this.charge = matterParticles.getCharges();
+        this.particlesPerRow = matterParticles.getParticlesPerRow();
+        this.distanceBetweenParticles = matterParticles.getDistanceBetweenParticles();
+        this.order = order;
+        this.nearWindow = nearWindow;
+        this.margin = margin;
+        this.cellsPerRow = particlesPerRow + 2 * margin;
+        this.coefficientCount = (order + 1) * (order + 2) / 2;
+        this.coefficients = new double[cellsPerRow * cellsPerRow * coefficientCount];
+
+        double rowSign = Math.signum(charge[particlesPerRow] / charge[0]);
+        double columnSign = Math.signum(charge[1] / charge[0]);
+        checkLattice(rowSign, columnSign);
+        buildCoefficients(rowSign, columnSign);
+    }
+
+    private void checkLattice(double rowSign, double columnSign) {
+        for (int i = 0; i < particlesPerRow; i++) {
+            for (int j = 0; j < particlesPerRow; j++) {
+                int index = i * particlesPerRow + j;
+                double expected = charge[0] * getSign(rowSign, i) * getSign(columnSign, j);
+                if (charge[index] != expected || x[index] != distanceBetweenParticles * i || y[index] != distanceBetweenParticles * j) {
+                    throw new IllegalArgumentException("Not a regular lattice with a periodic charge pattern at site " + index);
+                }
+            }
+        }
+    }
+
+    // sign^power for sign = +-1, with negative powers allowed
+    private static double getSign(double sign, int power) {
+        return sign < 0 && (power & 1) != 0 ? -1 : 1;
+    }
+
+    private int getCoefficientIndex(int k, int l) {
+        return k * (order + 1) - k * (k - 1) / 2 + l;
+    }
+
+    // The site-to-center offset of cell a and site i is m + 1/2 with m = a - i, so for every cell the sites span the
+    // offsets [a - n + 1, a] in each axis, and the near window is always the offsets [-nearWindow, nearWindow - 1].
+    // 1 / r is even in each axis, so the Taylor coefficients are computed for one quadrant of offsets and mirrored.
+    private void buildCoefficients(double rowSign, double columnSign) {
+        int quadrant = particlesPerRow + margin;
+        double[] quadrantCoefficients = new double[coefficientCount * quadrant * quadrant];
+        IntStream.range(0, quadrant).parallel().forEach(p -> {
+            double[] taylor = new double[coefficientCount];
+            for (int r = 0; r < quadrant; r++) {
+                computeTaylorCoefficients(p + 0.5, r + 0.5, taylor);
+                for (int t = 0; t < coefficientCount; t++) {
+                    quadrantCoefficients[(t * quadrant + p) * quadrant + r] = taylor[t];
+                }
+            }
+        });
+
+        int minOffset = -(particlesPerRow - 1 + margin);
+        int span = 2 * (particlesPerRow - 1 + margin) + 1;
+        // summed-area table with a leading row and column of zeros
+        double[] sums = new double[(span + 1) * (span + 1)];
+
+        for (int k = 0; k <= order; k++) {
+            for (int l = 0; k + l <= order; l++) {
+                int t = getCoefficientIndex(k, l);
+                int kParity = k;
+                int lParity = l;
+
+                IntStream.range(0, span).parallel().forEach(row -> {
+                    int m = row + minOffset;
+                    int p = m >= 0 ? m : -m - 1;
+                    double rowFactor = getSign(rowSign, m) * (m >= 0 ? 1 : getSign(-1, kParity));
+                    boolean nearRow = m >= -nearWindow && m < nearWindow;
+                    double runningSum = 0;
+                    for (int column = 0; column < span; column++) {
+                        int n = column + minOffset;
+                        if (!nearRow || n < -nearWindow || n >= nearWindow) {
+                            int r = n >= 0 ? n : -n - 1;
+                            double columnFactor = getSign(columnSign, n) * (n >= 0 ? 1 : getSign(-1, lParity));
+                            runningSum += rowFactor * columnFactor * quadrantCoefficients[(t * quadrant + p) * quadrant + r];
+                        }
+                        sums[(row + 1) * (span + 1) + column + 1] = runningSum;
+                    }
+                });
+                for (int row = 1; row <= span; row++) {
+                    for (int column = 1; column <= span; column++) {
+                        sums[row * (span + 1) + column] += sums[(row - 1) * (span + 1) + column];
+                    }
+                }
+
+                IntStream.range(0, cellsPerRow).parallel().forEach(cellRow -> {
+                    int a = cellRow - margin;
+                    int top = a - minOffset + 1;
+                    int bottom = a - particlesPerRow + 1 - minOffset;
+                    for (int cellColumn = 0; cellColumn < cellsPerRow; cellColumn++) {
+                        int b = cellColumn - margin;
+                        int right = b - minOffset + 1;
+                        int left = b - particlesPerRow + 1 - minOffset;
+                        double sum = sums[top * (span + 1) + right] - sums[bottom * (span + 1) + right]
+                                - sums[top * (span + 1) + left] + sums[bottom * (span + 1) + left];
+                        coefficients[(cellRow * cellsPerRow + cellColumn) * coefficientCount + t] =
+                                charge[0] * getSign(rowSign, a) * getSign(columnSign, b) * sum;
+                    }
+                });
+            }
+        }
+    }
+
+    // Taylor coefficients (1 / k! l!) d^k/dX^k d^l/dY^l of 1 / r at (X, Y), from the recurrence
+    //   s r^2 b(k, l) + (2 s - 1) (X b(k - 1, l) + Y b(k, l - 1)) + (s - 1) (b(k - 2, l) + b(k, l - 2)) = 0, s = k + l
+    private void computeTaylorCoefficients(double X, double Y, double[] taylor) {
+        double distanceSquared = X * X + Y * Y;
+        taylor[0] = 1.0 / Math.sqrt(distanceSquared);
+
+        for (int s = 1; s <= order; s++) {
+            for (int k = 0; k <= s; k++) {
+                int l = s - k;
+                double sum = 0;
+                if (k >= 1) sum += (2 * s - 1) * X * taylor[getCoefficientIndex(k - 1, l)];
+                if (l >= 1) sum += (2 * s - 1) * Y * taylor[getCoefficientIndex(k, l - 1)];
+                if (k >= 2) sum += (s - 1) * taylor[getCoefficientIndex(k - 2, l)];
+                if (l >= 2) sum += (s - 1) * taylor[getCoefficientIndex(k, l - 2)];
+                taylor[getCoefficientIndex(k, l)] = -sum / (s * distanceSquared);
+            }
+        }
+    }
+
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        double u = x / distanceBetweenParticles;
+        double v = y / distanceBetweenParticles;
+        int a = (int) Math.floor(u);
+        int b = (int) Math.floor(v);
+        if (a < -margin || a >= particlesPerRow + margin || b < -margin || b >= particlesPerRow + margin) {
+            return matterParticles.getTotalElectrostaticForceAndPotential(x, y, charge, force);
+        }
+
+        // far field: polynomial in the offset (u, v) from the cell center, in lattice units
+        u -= a + 0.5;
+        v -= b + 0.5;
+        int base = ((a + margin) * cellsPerRow + b + margin) * coefficientCount;
+        double farPotential = 0;
+        double gradientX = 0;
+        double gradientY = 0;
+        double uPower = 1;
+        double uPreviousPower = 0;
+        for (int k = 0, t = base; k <= order; k++) {
+            double vPower = 1;
+            double vPreviousPower = 0;
+            for (int l = 0; k + l <= order; l++, t++) {
+                double coefficient = coefficients[t];
+                farPotential += coefficient * uPower * vPower;
+                gradientX += coefficient * k * uPreviousPower * vPower;
+                gradientY += coefficient * l * uPower * vPreviousPower;
+                vPreviousPower = vPower;
+                vPower *= v;
+            }
+            uPreviousPower = uPower;
+            uPower *= u;
+        }
+
+        // near window: the sites whose offsets were left out of the tables
+        int firstRow = Math.max(0, a - nearWindow + 1);
+        int lastRow = Math.min(particlesPerRow - 1, a + nearWindow);
+        int firstColumn = Math.max(0, b - nearWindow + 1);
+        int lastColumn = Math.min(particlesPerRow - 1, b + nearWindow);
+        double forceX = 0;
+        double forceY = 0;
+        double potential = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int i = row * particlesPerRow + column;
+                double deltaX = x - this.x[i];
+                double deltaY = y - this.y[i];
+                double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                double chargeOverDistance = this.charge[i] * inverseDistance;
+                double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+                forceX += deltaX * magnitude;
+                forceY += deltaY * magnitude;
+                potential += chargeOverDistance;
+            }
+        }
+
+        double inverseSpacing = 1.0 / distanceBetweenParticles;
+        forceX -= gradientX * inverseSpacing * inverseSpacing;
+        forceY -= gradientY * inverseSpacing * inverseSpacing;
+        potential += farPotential * inverseSpacing;
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = forceX * factor;
+        force[1] = forceY * factor;
+
+        return potential * factor;
+    }
+}
@@ -1,96 +1,229 @@
 package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
 
+import java.util.Arrays;
 import java.util.Iterator;
-
-public class MatterParticles implements Iterable<Particle> {
-    private final Particle[][] matrix;
+import java.util.NoSuchElementException;
+
+public class MatterParticles implements Iterable<Particle>, ForceProvider {
+    // particle (row, column) lives at index row * particlesPerRow + column
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+    private final double mass;
     private final double distanceBetweenParticles;
     private final int particlesPerRow;
 
     public MatterParticles(int particlesPerRow, double distanceBetweenParticles, double charge, double mass) {
         this.particlesPerRow = particlesPerRow;
-        this.matrix = new Particle[particlesPerRow][particlesPerRow];
+        this.x = new double[particlesPerRow * particlesPerRow];
+        this.y = new double[particlesPerRow * particlesPerRow];
+        this.charge = new double[particlesPerRow * particlesPerRow];
+        this.mass = mass;
         this.distanceBetweenParticles = distanceBetweenParticles;
 
-        initialize(distanceBetweenParticles, charge, mass);
+        initialize(distanceBetweenParticles, charge);
     }
 
     public Particle get(int row, int column) {
-        return matrix[row][column];
+        int index = row * particlesPerRow + column;
+        return new Particle(x[index], y[index], 0, 0, mass, charge[index]);
     }
 
-    public void set(int row, int column, Particle particle) {
-        matrix[row][column] = particle;
+    public int getParticlesPerRow() {
+        return particlesPerRow;
     }
 
-    private void initialize(double distanceBetweenParticles, double charge, double mass) {
-        double L = distanceBetweenParticles * (particlesPerRow - 1);
+    public double getDistanceBetweenParticles() {
+        return distanceBetweenParticles;
+    }
 
-        for (int i = 0; i < matrix.length; i++) {
+    public int size() {
+        return x.length;
+    }
+
+    double[] getXs() {
+        return x;
+    }
+
+    double[] getYs() {
+        return y;
+    }
+
+    double[] getCharges() {
+        return charge;
+    }
+
+    private void initialize(double distanceBetweenParticles, double charge) {
+        for (int i = 0; i < particlesPerRow; i++) {
             charge = -charge;
-            for (int j = 0; j < matrix[i].length; j++) {
+            for (int j = 0; j < particlesPerRow; j++) {
                 charge = -charge;
-                matrix[i][j] = new Particle(distanceBetweenParticles * i, distanceBetweenParticles * j, 0 ,0, mass, charge);
+                int index = i * particlesPerRow + j;
+                this.x[index] = distanceBetweenParticles * i;
+                this.y[index] = distanceBetweenParticles * j;
+                this.charge[index] = charge;
             }
         }
     }
 
-    public Vector2D getTotalElectrostaticForce(Particle other) {
-        Vector2D totalForce = new Vector2D(0, 0);
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        double forceX = 0;
+        double forceY = 0;
+        double potential = 0;
+
+        for (int i = 0; i < this.x.length; i++) {
+            double deltaX = x - this.x[i];
+            double deltaY = y - this.y[i];
+            double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+            double chargeOverDistance = this.charge[i] * inverseDistance;
+            double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+            forceX += deltaX * magnitude;
+            forceY += deltaY * magnitude;
+            potential += chargeOverDistance;
+        }
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = forceX * factor;
+        force[1] = forceY * factor;
 
-        for (Particle[] particleRow : matrix) {
-            for (Particle matterParticle : particleRow) {
-                totalForce = totalForce.add(other.getElectrostaticForce(matterParticle));
+        return potential * factor;
+    }
+
+    // positions and forces are interleaved (x0, y0, x1, y1, ...); the lattice is swept in tiles small enough
+    // to stay in cache while every projectile accumulates that tile's contribution in registers
+    public void getTotalElectrostaticForces(double[] positions, int count, double charge, double[] forces) {
+        final int tileSize = 512;
+        double factor = Constants.COULOMB_CONSTANT * charge;
+
+        Arrays.fill(forces, 0, 2 * count, 0.0);
+
+        for (int tileStart = 0; tileStart < this.x.length; tileStart += tileSize) {
+            int tileEnd = Math.min(tileStart + tileSize, this.x.length);
+
+            for (int p = 0; p < 2 * count; p += 2) {
+                double x = positions[p];
+                double y = positions[p + 1];
+                double forceX = 0;
+                double forceY = 0;
+
+                for (int i = tileStart; i < tileEnd; i++) {
+                    double deltaX = x - this.x[i];
+                    double deltaY = y - this.y[i];
+                    double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                    double magnitude = this.charge[i] * inverseDistance * inverseDistance * inverseDistance;
+                    forceX += deltaX * magnitude;
+                    forceY += deltaY * magnitude;
+                }
+
+                forces[p] += forceX;
+                forces[p + 1] += forceY;
             }
         }
 
-        return totalForce;
+        for (int p = 0; p < 2 * count; p++) {
+            forces[p] *= factor;
+        }
     }
 
-    public double getTotalElectrostaticPotentialEnergy(Particle other) {
-        double totalPotentialEnergy = 0;
-
-        for (Particle[] particleRow : matrix) {
-            for (Particle matterParticle : particleRow) {
-                totalPotentialEnergy += other.getElectrostaticPotentialEnergy(matterParticle);
+    // Short-range part of the lattice interaction: each site's potential is weighted by a switch that is 1 up to
+    // innerRadius and falls smoothly (C1) to 0 at outerRadius, and the force is minus the gradient of that
+    // weighted potential, so near and total - near are both conservative. Only sites inside outerRadius are visited.
+    public double getNearElectrostaticForceAndPotential(double x, double y, double charge, double innerRadius, double outerRadius, double[] force) {
+        double width = outerRadius - innerRadius;
+        double outerRadiusSquared = outerRadius * outerRadius;
+        int firstRow = Math.max(0, (int) Math.ceil((x - outerRadius) / distanceBetweenParticles));
+        int lastRow = Math.min(particlesPerRow - 1, (int) Math.floor((x + outerRadius) / distanceBetweenParticles));
+        int firstColumn = Math.max(0, (int) Math.ceil((y - outerRadius) / distanceBetweenParticles));
+        int lastColumn = Math.min(particlesPerRow - 1, (int) Math.floor((y + outerRadius) / distanceBetweenParticles));
+
+        double forceX = 0;
+        double forceY = 0;
+        double potential = 0;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int i = row * particlesPerRow + column;
+                double deltaX = x - this.x[i];
+                double deltaY = y - this.y[i];
+                double distanceSquared = deltaX * deltaX + deltaY * deltaY;
+                if (distanceSquared >= outerRadiusSquared) {
+                    continue;
+                }
+
+                double distance = Math.sqrt(distanceSquared);
+                double inverseDistance = 1.0 / distance;
+                double chargeOverDistance = this.charge[i] * inverseDistance;
+
+                double weight = 1;
+                double weightDerivative = 0;
+                if (distance > innerRadius) {
+                    double s = (distance - innerRadius) / width;
+                    weight = 1 - s * s * (3 - 2 * s);
+                    weightDerivative = -6 * s * (1 - s) / width;
+                }
+
+                double magnitude = (weight * chargeOverDistance * inverseDistance - weightDerivative * chargeOverDistance) * inverseDistance;
+                forceX += deltaX * magnitude;
+                forceY += deltaY * magnitude;
+                potential += weight * chargeOverDistance;
             }
         }
 
-        return totalPotentialEnergy;
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = forceX * factor;
+        force[1] = forceY * factor;
+
+        return potential * factor;
     }
 
-    public Iterator<Particle> iterator() {
-        return new MatterParticlesIterator(matrix, particlesPerRow);
+    public void getTotalElectrostaticForce(double x, double y, double charge, double[] force) {
+        getTotalElectrostaticForceAndPotential(x, y, charge, force);
     }
 
-    private class MatterParticlesIterator implements Iterator<Particle> {
+    public Vector2D getTotalElectrostaticForce(Particle other) {
+        double[] force = new double[2];
+        getTotalElectrostaticForceAndPotential(other.getX(), other.getY(), other.getCharge(), force);
+        return new Vector2D(force[0], force[1]);
+    }
 
-        private int row;
-        private int column;
-        private int particlesPerRow;
-        private Particle[][] matrix;
+    public double getTotalElectrostaticPotentialEnergy(double x, double y, double charge) {
+        double potential = 0;
 
-        MatterParticlesIterator(Particle[][] matterParticles, int particlesPerRow) {
-            this.matrix = matterParticles;
-            this.row = 0;
-            this.column = 0;
-            this.particlesPerRow = particlesPerRow;
+        for (int i = 0; i < this.x.length; i++) {
+            double deltaX = x - this.x[i];
+            double deltaY = y - this.y[i];
+            potential += this.charge[i] / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
         }
 
+        return potential * Constants.COULOMB_CONSTANT * charge;
+    }
+
+    public double getTotalElectrostaticPotentialEnergy(Particle other) {
+        return getTotalElectrostaticPotentialEnergy(other.getX(), other.getY(), other.getCharge());
+    }
+
+    // read-only view: every element is a fresh copy of the stored site
+    public Iterator<Particle> iterator() {
+        return new MatterParticlesIterator();
+    }
+
+    private class MatterParticlesIterator implements Iterator<Particle> {
+
+        private int index;
+
         @Override
         public boolean hasNext() {
-            return row < particlesPerRow && column < particlesPerRow;
+            return index < x.length;
         }
 
         @Override
         public Particle next() {
-            Particle particle = matrix[row][column];
-            if (column == particlesPerRow - 1) {
-                row++;
-                column = 0;
-            } else {
-                column++;
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            Particle particle = new Particle(x[index], y[index], 0, 0, mass, charge[index]);
+            index++;
             return particle;
         }
     }
@@ -0,0 +1,203 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+// Estimates the probability of every final status for each initial speed by sampling initialHeightRatio uniformly
+// in [0, 1], and the speed uniformly within speedJitter of the bucket's speed, instead of sweeping a fixed grid.
+// Every round runs batchSize new samples of each open bucket in parallel; a bucket closes once the Wilson
+// interval of every status is narrower than targetHalfWidth on each side, or after maxRuns samples. Sample k of
+// bucket b is drawn from Seeds.derive(seed, b, k), so the estimates do not depend on the number of threads, and
+// Simulation replays it given the bucket's initialSpeed, the same speedJitter and that seed, the last output column.
+public class MonteCarloEstimator {
+    private static final SimulationStatus[] OUTCOMES = {
+            SimulationStatus.ABSORBED, SimulationStatus.LEFT_ESCAPED, SimulationStatus.RIGHT_ESCAPED,
+            SimulationStatus.BOTTOM_ESCAPED, SimulationStatus.TOP_ESCAPED
+    };
+
+    private final Ensemble ensemble;
+    private final int parallelism;
+    private final int batchSize;
+    private final int minRuns;
+    private final int maxRuns;
+    private final double targetHalfWidth;
+    private final double z;
+    private final double speedJitter;
+
+    public MonteCarloEstimator(Ensemble ensemble, Configuration configuration) {
+        this.ensemble = ensemble;
+        this.parallelism = configuration.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+        this.batchSize = configuration.getInt("batchSize", 4 * parallelism);
+        this.minRuns = configuration.getInt("minRuns", 30);
+        this.maxRuns = configuration.getInt("maxRuns", 1000);
+        this.targetHalfWidth = configuration.getDouble("targetHalfWidth", 0.05);
+        this.z = configuration.getDouble("confidenceZ", 1.96);
+        this.speedJitter = configuration.getDouble("speedJitter", 0);
+        if (batchSize < 1 || minRuns < 1 || maxRuns < minRuns) {
+            throw new IllegalArgumentException("Need batchSize >= 1 and 1 <= minRuns <= maxRuns");
+        }
+    }
+
+    // initialSpeeds=5000,50000 targetHalfWidth=0.02 seed=1; the runs go to outputFileName in the Ensemble layout
+    // and the estimates to summaryFileName, one row per speed: speed runs converged (1 or 0), then p low high for A EL ER EB ET
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Configuration configuration = Configuration.load(args);
+        String outputFileName = configuration.getString("outputFileName", "montecarlo.txt");
+        String summaryFileName = configuration.getString("summaryFileName", "montecarlo_summary.txt");
+        double[] speeds = configuration.getDoubles("initialSpeeds", configuration.getString("initialSpeed", "5000,16250,27500,38750,50000"));
+        long seed = configuration.getLong("seed", Seeds.fresh());
+        System.out.println("Seed: " + seed);
+
+        try (Ensemble ensemble = new Ensemble(new LatticeCache(configuration), configuration)) {
+            MonteCarloEstimator estimator = new MonteCarloEstimator(ensemble, configuration);
+
+            List<SimulationConfig> runs = new ArrayList<>();
+            List<SimulationResult> results = new ArrayList<>();
+            List<Long> seeds = new ArrayList<>();
+            long startTime = System.nanoTime();
+            List<Bucket> buckets = estimator.estimate(SimulationConfig.from(configuration), speeds, seed, runs, results, seeds);
+            System.out.println("Elapsed: " + (System.nanoTime() - startTime) / 1e9 + " s");
+            System.out.println("Runs: " + runs.size());
+
+            Ensemble.printResults(runs, results, seeds, outputFileName);
+            estimator.printSummary(buckets, summaryFileName);
+            ensemble.printWorkerMetrics();
+        }
+    }
+
+    // runs, results and seeds, if not null, receive every sample in the order it was drawn
+    public List<Bucket> estimate(SimulationConfig base, double[] speeds, long seed, List<SimulationConfig> runs,
+                                 List<SimulationResult> results, List<Long> seeds) throws InterruptedException, ExecutionException {
+        List<Bucket> buckets = new ArrayList<>(speeds.length);
+        for (double speed : speeds) {
+            buckets.add(new Bucket(speed, base.withInitialConditions(speed, 0)));
+        }
+
+        for (int round = 1; ; round++) {
+            List<Bucket> owners = new ArrayList<>();
+            List<SimulationConfig> batch = new ArrayList<>();
+            List<Long> batchSeeds = new ArrayList<>();
+            for (int b = 0; b < buckets.size(); b++) {
+                Bucket bucket = buckets.get(b);
+                if (!bucket.open) {
+                    continue;
+                }
+                int samples = Math.min(batchSize, maxRuns - bucket.runs);
+                for (int k = bucket.runs; k < bucket.runs + samples; k++) {
+                    long sampleSeed = Seeds.derive(seed, b, k);
+                    batch.add(bucket.base.withRandomInitialConditions(sampleSeed, speedJitter));
+                    batchSeeds.add(sampleSeed);
+                    owners.add(bucket);
+                }
+            }
+            if (batch.isEmpty()) {
+                return buckets;
+            }
+
+            List<SimulationResult> batchResults = ensemble.run(batch, parallelism);
+            for (int i = 0; i < batch.size(); i++) {
+                owners.get(i).add(batchResults.get(i).status());
+            }
+            if (runs != null) {
+                runs.addAll(batch);
+            }
+            if (results != null) {
+                results.addAll(batchResults);
+            }
+            if (seeds != null) {
+                seeds.addAll(batchSeeds);
+            }
+
+            for (Bucket bucket : buckets) {
+                if (bucket.open && bucket.runs >= minRuns && (bucket.runs >= maxRuns || bucket.getMaxHalfWidth(z) <= targetHalfWidth)) {
+                    bucket.open = false;
+                    System.out.printf("Speed %s closed after %d runs (round %d, half width %.4f)%n",
+                            bucket.speed, bucket.runs, round, bucket.getMaxHalfWidth(z));
+                }
+            }
+        }
+    }
+
+    // Wilson score interval {low, high} for successes out of runs; unlike the normal approximation it stays inside
+    // [0, 1] and does not collapse to a point when no run, or every run, ended in the status
+    public static double[] getWilsonInterval(int successes, int runs, double z) {
+        if (runs == 0) {
+            return new double[]{0, 1};
+        }
+        double p = (double) successes / runs;
+        double zSquaredOverRuns = z * z / runs;
+        double center = (p + zSquaredOverRuns / 2) / (1 + zSquaredOverRuns);
+        double halfWidth = z / (1 + zSquaredOverRuns) * Math.sqrt(p * (1 - p) / runs + zSquaredOverRuns / (4 * runs));
+        return new double[]{Math.max(0, center - halfWidth), Math.min(1, center + halfWidth)};
+    }
+
+    private void printSummary(List<Bucket> buckets, String fileName) throws IOException {
+        PrintWriter printWriter = new PrintWriter(new FileWriter(fileName));
+
+        for (Bucket bucket : buckets) {
+            StringBuilder row = new StringBuilder().append(bucket.speed).append(' ').append(bucket.runs).append(' ').append(bucket.getMaxHalfWidth(z) <= targetHalfWidth ? 1 : 0);
+            System.out.printf("Speed %s (%d runs):", bucket.speed, bucket.runs);
+            for (int i = 0; i < OUTCOMES.length; i++) {
+                double[] interval = getWilsonInterval(bucket.counts[i], bucket.runs, z);
+                double proportion = bucket.getProportion(i);
+                row.append(' ').append(proportion).append(' ').append(interval[0]).append(' ').append(interval[1]);
+                System.out.printf(" %s %.3f [%.3f, %.3f]", OUTCOMES[i], proportion, interval[0], interval[1]);
+            }
+            System.out.println();
+            printWriter.print(row.append('\n'));
+        }
+
+        printWriter.close();
+    }
+
+    public static final class Bucket {
+        private final double speed;
+        private final SimulationConfig base;
+        private final int[] counts = new int[OUTCOMES.length];
+        private int runs;
+        private boolean open = true;
+
+        private Bucket(double speed, SimulationConfig base) {
+            this.speed = speed;
+            this.base = base;
+        }
+
+        private void add(SimulationStatus status) {
+            for (int i = 0; i < OUTCOMES.length; i++) {
+                if (OUTCOMES[i] == status) {
+                    counts[i]++;
+                }
+            }
+            runs++;
+        }
+
+        // the widest distance from a proportion to either end of its interval
+        private double getMaxHalfWidth(double z) {
+            double maxHalfWidth = 0;
+            for (int i = 0; i < OUTCOMES.length; i++) {
+                double[] interval = getWilsonInterval(counts[i], runs, z);
+                double proportion = getProportion(i);
+                maxHalfWidth = Math.max(maxHalfWidth, Math.max(proportion - interval[0], interval[1] - proportion));
+            }
+            return maxHalfWidth;
+        }
+
+        public double getSpeed() {
+            return speed;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public double getProportion(int outcome) {
+            return runs == 0 ? 0 : (double) counts[outcome] / runs;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+// Cartesian multipole moments up to the quadrupole, stored in flat arrays with a stride of SIZE:
+// charge, dipole x, dipole y, traceless quadrupole xx, xy, yy
+final class MultipoleExpansion {
+    static final int SIZE = 6;
+
+    private MultipoleExpansion() {
+    }
+
+    // (deltaX, deltaY) goes from the expansion center to the charge
+    static void accumulate(double[] moments, int offset, double deltaX, double deltaY, double charge) {
+        moments[offset] += charge;
+        moments[offset + 1] += charge * deltaX;
+        moments[offset + 2] += charge * deltaY;
+        moments[offset + 3] += charge * (2 * deltaX * deltaX - deltaY * deltaY);
+        moments[offset + 4] += charge * 3 * deltaX * deltaY;
+        moments[offset + 5] += charge * (2 * deltaY * deltaY - deltaX * deltaX);
+    }
+
+    // moves the moments of a child expansion onto a parent center, (shiftX, shiftY) going from parent to child center
+    static void translate(double[] child, int childOffset, double shiftX, double shiftY, double[] parent, int parentOffset) {
+        double charge = child[childOffset];
+        double dipoleX = child[childOffset + 1];
+        double dipoleY = child[childOffset + 2];
+
+        parent[parentOffset] += charge;
+        parent[parentOffset + 1] += dipoleX + charge * shiftX;
+        parent[parentOffset + 2] += dipoleY + charge * shiftY;
+        parent[parentOffset + 3] += child[childOffset + 3]
+                + 2 * (2 * shiftX * dipoleX - shiftY * dipoleY) + charge * (2 * shiftX * shiftX - shiftY * shiftY);
+        parent[parentOffset + 4] += child[childOffset + 4]
+                + 3 * (shiftX * dipoleY + shiftY * dipoleX) + charge * 3 * shiftX * shiftY;
+        parent[parentOffset + 5] += child[childOffset + 5]
+                + 2 * (2 * shiftY * dipoleY - shiftX * dipoleX) + charge * (2 * shiftY * shiftY - shiftX * shiftX);
+    }
+
+    // (deltaX, deltaY) goes from the expansion center to the evaluation point; adds the field per unit
+    // charge (without the Coulomb constant) into field and returns the potential in the same units
+    static double evaluate(double[] moments, int offset, double deltaX, double deltaY, double[] field) {
+        double charge = moments[offset];
+        double dipoleX = moments[offset + 1];
+        double dipoleY = moments[offset + 2];
+        double quadrupoleXX = moments[offset + 3];
+        double quadrupoleXY = moments[offset + 4];
+        double quadrupoleYY = moments[offset + 5];
+
+        double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        double inverseDistance2 = inverseDistance * inverseDistance;
+        double inverseDistance3 = inverseDistance * inverseDistance2;
+        double inverseDistance5 = inverseDistance3 * inverseDistance2;
+        double inverseDistance7 = inverseDistance5 * inverseDistance2;
+
+        double dipoleProjection = deltaX * dipoleX + deltaY * dipoleY;
+        double quadrupoleX = quadrupoleXX * deltaX + quadrupoleXY * deltaY;
+        double quadrupoleY = quadrupoleXY * deltaX + quadrupoleYY * deltaY;
+        double quadrupoleProjection = deltaX * quadrupoleX + deltaY * quadrupoleY;
+
+        double radial = charge * inverseDistance3 + 3 * dipoleProjection * inverseDistance5 + 2.5 * quadrupoleProjection * inverseDistance7;
+        field[0] += radial * deltaX - dipoleX * inverseDistance3 - quadrupoleX * inverseDistance5;
+        field[1] += radial * deltaY - dipoleY * inverseDistance3 - quadrupoleY * inverseDistance5;
+
+        return charge * inverseDistance + dipoleProjection * inverseDistance3 + 0.5 * quadrupoleProjection * inverseDistance5;
+    }
+}
@@ -0,0 +1,380 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+import ar.edu.itba.ss.odemethods.AdaptiveVectorOdeMethod;
+import ar.edu.itba.ss.odemethods.StepSizeController;
+import ar.edu.itba.ss.odemethods.VectorForce;
+import ar.edu.itba.ss.odemethods.VectorOdeMethod;
+import ar.edu.itba.ss.output.DelimitedTextSink;
+import ar.edu.itba.ss.output.Sink;
+import ar.edu.itba.ss.output.Sinks;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+// Mobile-lattice mode: every lattice site moves too, pulled by all the other charges and tethered to its
+// equilibrium site by a spring, so the lattice vibrates and recoils instead of staying frozen. A pure Coulomb
+// lattice of alternating charges is not stable by itself; the tether plays the role of the rest of the crystal.
+// The state vector interleaves (x, y) of every site followed by the projectile, so the usual vector integrators
+// drive it unchanged. As in the other modes, CrossingDetector finds exits and absorption inside each step; the
+// sites near the projectile follow the cubic Hermite interpolant of their own step, so absorption is still
+// measured against where they are at that point of the step.
+public class NBodySimulation {
+    private final static String TRAJECTORY_FILE_NAME = "nbody.txt";
+    private final static String LATTICE_FILE_NAME = "lattice.txt";
+
+    private final PairwiseForceKernel kernel;
+    private final int sites;
+    private final int particlesPerRow;
+    private final double distanceBetweenParticles;
+    private final double boxWidth;
+    private final double boxHeight;
+    private final double mass;
+    private final double[] charge;
+    private final double[] equilibrium;
+    private final double tether;
+    private final double[] r0;
+    private final double[] v0;
+    private final double[] positions;
+    private final double[] forces;
+    // every coordinate at the start and end of the current step, and the sites the projectile can reach during it
+    private final double[] startPositions;
+    private final double[] startVelocities;
+    private final double[] endPositions;
+    private final double[] endVelocities;
+    private int firstRow, lastRow, firstColumn, lastColumn;
+    private double stepTaken;
+
+    // tetherStiffness is in units of COULOMB_CONSTANT q^2 / d^3, the scale of the nearest-neighbour force gradient;
+    // temperature draws Maxwell-Boltzmann site velocities with the lattice's net momentum removed
+    public NBodySimulation(SimulationConfig config, double tetherStiffness, double temperature, SplittableRandom random, int blockSize, ForkJoinPool pool) {
+        MatterParticles matterParticles = new MatterParticles(config.particlesPerRow(), config.distanceBetweenParticles(), config.charge(), config.mass());
+        this.sites = matterParticles.size();
+        this.particlesPerRow = config.particlesPerRow();
+        this.distanceBetweenParticles = config.distanceBetweenParticles();
+        this.boxWidth = this.boxHeight = distanceBetweenParticles * (particlesPerRow - 1);
+        this.mass = config.mass();
+        this.tether = tetherStiffness * Constants.COULOMB_CONSTANT * config.charge() * config.charge() / Math.pow(distanceBetweenParticles, 3);
+
+        int count = sites + 1;
+        this.charge = new double[count];
+        this.equilibrium = new double[2 * sites];
+        this.r0 = new double[2 * count];
+        this.v0 = new double[2 * count];
+        this.positions = new double[2 * count];
+        this.forces = new double[2 * count];
+        this.startPositions = new double[2 * count];
+        this.startVelocities = new double[2 * count];
+        this.endPositions = new double[2 * count];
+        this.endVelocities = new double[2 * count];
+
+        double[] siteX = matterParticles.getXs();
+        double[] siteY = matterParticles.getYs();
+        System.arraycopy(matterParticles.getCharges(), 0, charge, 0, sites);
+        charge[sites] = config.charge();
+        for (int i = 0; i < sites; i++) {
+            equilibrium[2 * i] = r0[2 * i] = siteX[i];
+            equilibrium[2 * i + 1] = r0[2 * i + 1] = siteY[i];
+        }
+        r0[2 * sites] = -distanceBetweenParticles;
+        r0[2 * sites + 1] = config.getInitialHeight();
+        v0[2 * sites] = config.initialSpeed();
+
+        if (temperature > 0) {
+            double sigma = Math.sqrt(Constants.BOLTZMANN_CONSTANT * temperature / mass);
+            double meanVx = 0;
+            double meanVy = 0;
+            for (int i = 0; i < sites; i++) {
+                v0[2 * i] = sigma * nextGaussian(random);
+                v0[2 * i + 1] = sigma * nextGaussian(random);
+                meanVx += v0[2 * i] / sites;
+                meanVy += v0[2 * i + 1] / sites;
+            }
+            for (int i = 0; i < sites; i++) {
+                v0[2 * i] -= meanVx;
+                v0[2 * i + 1] -= meanVy;
+            }
+        }
+
+        this.kernel = new PairwiseForceKernel(charge, blockSize, pool);
+    }
+
+    // SplittableRandom has no nextGaussian on Java 17
+    private static double nextGaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Configuration configuration = Configuration.load(args);
+        SimulationConfig config = SimulationConfig.from(configuration);
+        int parallelism = configuration.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+        int blockSize = configuration.getInt("blockSize", 256);
+        long seed = configuration.getLong("seed", Seeds.fresh());
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            if ("kernel".equals(configuration.getString("mode", "run"))) {
+                printKernelTimings(configuration.getDoubles("kernelParticlesPerRow", "16,64,128,256"), config, blockSize, pool);
+                return;
+            }
+
+            NBodySimulation simulation = new NBodySimulation(config, configuration.getDouble("tetherStiffness", 100),
+                    configuration.getDouble("temperature", 0), new SplittableRandom(seed), blockSize, pool);
+
+            System.out.println("Particles: " + simulation.kernel.size());
+            System.out.println("Seed: " + seed);
+            System.out.println("Integrator: " + config.integrator().method());
+
+            Sink sink = Sinks.from(configuration, new DelimitedTextSink(configuration.getString("outputFileName", TRAJECTORY_FILE_NAME), null, " "), 5);
+            SimulationResult result;
+            try (sink) {
+                result = simulation.run(config.stepSize(), config.integrator(), config.saveFrequency(), configuration.getLong("maxSteps", 0), sink);
+            }
+            Sinks.printStatistics(sink);
+
+            System.out.println("Status: " + result.status());
+            System.out.println("Steps: " + result.steps() + ", force evaluations: " + result.forceEvaluations());
+            System.out.println("Energy drift: " + result.energyDrift());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // wall time of one all-pairs evaluation, to check how far the kernel scales on this machine
+    private static void printKernelTimings(double[] rows, SimulationConfig config, int blockSize, ForkJoinPool pool) {
+        System.out.println("particles msPerEvaluation pairsPerSecond");
+        for (double row : rows) {
+            SimulationConfig sized = new SimulationConfig((int) row, config.distanceBetweenParticles(), config.charge(), config.mass(),
+                    config.initialSpeed(), config.initialHeightRatio(), config.stepSize(), config.saveFrequency(), config.forceMode(), config.integrator());
+            NBodySimulation simulation = new NBodySimulation(sized, 0, 0, new SplittableRandom(0), blockSize, pool);
+            int count = simulation.kernel.size();
+
+            simulation.kernel.apply(simulation.r0, simulation.forces);
+            int repeats = (int) Math.max(1, Math.min(1000, 2e9 / ((double) count * count)));
+            long start = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                simulation.kernel.apply(simulation.r0, simulation.forces);
+            }
+            double nanos = (double) (System.nanoTime() - start) / repeats;
+            System.out.printf("%d %.3f %.3e\n", count, nanos / 1e6, 0.5 * count * (count - 1) / nanos * 1e9);
+        }
+    }
+
+    // Rows are (x, y, vx, vy) of the projectile and the kinetic energy of the lattice. maxSteps <= 0 runs until
+    // the projectile is absorbed or leaves the box. The last row, time and trajectory length end at the crossing
+    // point; the lattice, its energy and lattice.txt are those at the end of the last step.
+    public SimulationResult run(double stepSize, IntegratorSettings integrator, int saveFrequency, long maxSteps, Sink trajectoryWriter) throws IOException {
+        if (integrator.method().equals("respa")) {
+            throw new IllegalArgumentException("RESPA splits the force of a static lattice and cannot drive a mobile one");
+        }
+
+        long[] forceEvaluations = {0};
+        VectorForce force = (r, v, f) -> {
+            forceEvaluations[0]++;
+            kernel.apply(r, f);
+            for (int c = 0; c < equilibrium.length; c++) {
+                f[c] -= tether * (r[c] - equilibrium[c]);
+            }
+        };
+
+        // createAdaptiveMethod also gives the fixed-step Gear method for "gear"
+        AdaptiveVectorOdeMethod solver = integrator.createAdaptiveMethod(r0, v0, force, mass);
+        StepSizeController controller = integrator.isAdaptive()
+                ? integrator.createController(stepSize, distanceBetweenParticles, v0[2 * sites])
+                : null;
+
+        double dCut = Simulation.getAbsorptionDistance(distanceBetweenParticles);
+        CrossingDetector detector = new CrossingDetector(distanceBetweenParticles, boxWidth, boxHeight, dCut, this::getMovingSiteDistance);
+        double[] crossing = new double[4];
+        int x = 2 * sites;
+        int y = x + 1;
+
+        double initialEnergy = getEnergy(solver);
+        double[] row = new double[5];
+        long currentStep = 0;
+        double time = 0;
+        double trajectoryLength = 0;
+        writeRow(row, solver.getPosition(x), solver.getPosition(y), solver.getVelocity(x), solver.getVelocity(y), solver, trajectoryWriter);
+
+        SimulationStatus status = getStatus(solver, dCut);
+        while (status == SimulationStatus.NOT_FINISHED && (maxSteps <= 0 || currentStep < maxSteps)) {
+            copyState(solver, startPositions, startVelocities);
+
+            stepTaken = stepSize;
+            if (controller != null) {
+                double speed = Math.hypot(startVelocities[x], startVelocities[y]);
+                stepTaken = solver.adaptiveStep(controller, 0.5 * distanceBetweenParticles / speed);
+            } else {
+                solver.step(stepSize);
+            }
+            currentStep++;
+
+            copyState(solver, endPositions, endVelocities);
+            double nextX = endPositions[x];
+            double nextY = endPositions[y];
+            double nextVx = endVelocities[x];
+            double nextVy = endVelocities[y];
+
+            setSiteWindow();
+            detector.setSiteReach(getSiteReach());
+            status = detector.detect(startPositions[x], startPositions[y], startVelocities[x], startVelocities[y],
+                    nextX, nextY, nextVx, nextVy, stepTaken);
+
+            double timeTaken = stepTaken;
+            if (status != SimulationStatus.NOT_FINISHED) {
+                detector.interpolate(detector.getFraction(), crossing);
+                nextX = crossing[0];
+                nextY = crossing[1];
+                nextVx = crossing[2];
+                nextVy = crossing[3];
+                timeTaken *= detector.getFraction();
+            }
+
+            trajectoryLength += Math.hypot(nextX - startPositions[x], nextY - startPositions[y]);
+            time += timeTaken;
+
+            // the crossing point is always written so the trajectory ends where the run did
+            if (currentStep % saveFrequency == 0 || status != SimulationStatus.NOT_FINISHED) {
+                writeRow(row, nextX, nextY, nextVx, nextVy, solver, trajectoryWriter);
+            }
+        }
+
+        double energyDrift = (getEnergy(solver) - initialEnergy) / Math.abs(initialEnergy);
+        printLattice(solver);
+
+        return new SimulationResult(status, trajectoryLength, currentStep, energyDrift, forceEvaluations[0], time);
+    }
+
+    // boundaries as in Simulation.getStatus, then the 3x3 sites around the nearest equilibrium site at their current positions
+    private SimulationStatus getStatus(VectorOdeMethod solver, double dCut) {
+        double x = solver.getPosition(2 * sites);
+        double y = solver.getPosition(2 * sites + 1);
+
+        SimulationStatus boundaryStatus = Simulation.getStatus(x, y, distanceBetweenParticles, boxWidth, boxHeight, 0);
+        if (boundaryStatus != SimulationStatus.NOT_FINISHED) {
+            return boundaryStatus;
+        }
+
+        int nearestRow = (int) Math.round(x / distanceBetweenParticles);
+        int nearestColumn = (int) Math.round(y / distanceBetweenParticles);
+        for (int row = Math.max(0, nearestRow - 1); row <= Math.min(particlesPerRow - 1, nearestRow + 1); row++) {
+            for (int column = Math.max(0, nearestColumn - 1); column <= Math.min(particlesPerRow - 1, nearestColumn + 1); column++) {
+                int i = row * particlesPerRow + column;
+                double deltaX = x - solver.getPosition(2 * i);
+                double deltaY = y - solver.getPosition(2 * i + 1);
+                if (deltaX * deltaX + deltaY * deltaY < dCut * dCut) {
+                    return SimulationStatus.ABSORBED;
+                }
+            }
+        }
+        return SimulationStatus.NOT_FINISHED;
+    }
+
+    private static void copyState(VectorOdeMethod solver, double[] positions, double[] velocities) {
+        for (int c = 0; c < positions.length; c++) {
+            positions[c] = solver.getPosition(c);
+            velocities[c] = solver.getVelocity(c);
+        }
+    }
+
+    // the sites spanned by the nearest sites to both ends of the projectile's step, widened by one row and column
+    private void setSiteWindow() {
+        int x = 2 * sites;
+        int y = x + 1;
+        int startRow = (int) Math.round(startPositions[x] / distanceBetweenParticles);
+        int endRow = (int) Math.round(endPositions[x] / distanceBetweenParticles);
+        int startColumn = (int) Math.round(startPositions[y] / distanceBetweenParticles);
+        int endColumn = (int) Math.round(endPositions[y] / distanceBetweenParticles);
+        firstRow = Math.max(0, Math.min(startRow, endRow) - 1);
+        lastRow = Math.min(particlesPerRow - 1, Math.max(startRow, endRow) + 1);
+        firstColumn = Math.max(0, Math.min(startColumn, endColumn) - 1);
+        lastColumn = Math.min(particlesPerRow - 1, Math.max(startColumn, endColumn) + 1);
+    }
+
+    // how far any window site gets from its start along its interpolant, bounded as in CrossingDetector.detect
+    private double getSiteReach() {
+        double siteReach = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int i = row * particlesPerRow + column;
+                siteReach = Math.max(siteReach, Math.hypot(getReach(2 * i), getReach(2 * i + 1)));
+            }
+        }
+        return siteReach;
+    }
+
+    private double getReach(int c) {
+        double delta = endPositions[c] - startPositions[c];
+        double first = stepTaken * startVelocities[c];
+        double second = 3 * delta - stepTaken * (2 * startVelocities[c] + endVelocities[c]);
+        double third = -2 * delta + stepTaken * (startVelocities[c] + endVelocities[c]);
+        return Math.abs(first) + Math.abs(second) + Math.abs(third);
+    }
+
+    // CrossingDetector.SiteDistance over the window, each site at fraction s of its cubic Hermite interpolant
+    private double getMovingSiteDistance(double x, double y, double s) {
+        double startWeight = (1 + 2 * s) * (1 - s) * (1 - s);
+        double startSlope = stepTaken * s * (1 - s) * (1 - s);
+        double endWeight = s * s * (3 - 2 * s);
+        double endSlope = -stepTaken * s * s * (1 - s);
+
+        double closest = Double.POSITIVE_INFINITY;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int i = row * particlesPerRow + column;
+                double siteX = startWeight * startPositions[2 * i] + startSlope * startVelocities[2 * i]
+                        + endWeight * endPositions[2 * i] + endSlope * endVelocities[2 * i];
+                double siteY = startWeight * startPositions[2 * i + 1] + startSlope * startVelocities[2 * i + 1]
+                        + endWeight * endPositions[2 * i + 1] + endSlope * endVelocities[2 * i + 1];
+                closest = Math.min(closest, Math.hypot(x - siteX, y - siteY));
+            }
+        }
+        return closest;
+    }
+
+    private double getEnergy(VectorOdeMethod solver) {
+        double kinetic = 0;
+        double tetherEnergy = 0;
+        for (int c = 0; c < positions.length; c++) {
+            positions[c] = solver.getPosition(c);
+            double v = solver.getVelocity(c);
+            kinetic += 0.5 * mass * v * v;
+            if (c < equilibrium.length) {
+                double displacement = positions[c] - equilibrium[c];
+                tetherEnergy += 0.5 * tether * displacement * displacement;
+            }
+        }
+        return kinetic + tetherEnergy + kernel.apply(positions, forces);
+    }
+
+    private double getLatticeKineticEnergy(VectorOdeMethod solver) {
+        double kinetic = 0;
+        for (int c = 0; c < equilibrium.length; c++) {
+            double v = solver.getVelocity(c);
+            kinetic += 0.5 * mass * v * v;
+        }
+        return kinetic;
+    }
+
+    private void writeRow(double[] row, double x, double y, double vx, double vy, VectorOdeMethod solver, Sink trajectoryWriter) throws IOException {
+        row[0] = x;
+        row[1] = y;
+        row[2] = vx;
+        row[3] = vy;
+        row[4] = getLatticeKineticEnergy(solver);
+        trajectoryWriter.write(row);
+    }
+
+    // same columns as matter.txt plus the site velocities
+    private void printLattice(VectorOdeMethod solver) throws IOException {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(LATTICE_FILE_NAME))) {
+            for (int i = 0; i < sites; i++) {
+                printWriter.printf("%.23e %.23e %d %.23e %.23e\n", solver.getPosition(2 * i), solver.getPosition(2 * i + 1),
+                        Double.compare(charge[i], 0.0), solver.getVelocity(2 * i), solver.getVelocity(2 * i + 1));
+            }
+        }
+    }
+}
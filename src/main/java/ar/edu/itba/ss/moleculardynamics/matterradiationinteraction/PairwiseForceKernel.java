@@ -0,0 +1,182 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// All-pairs Coulomb forces between count mobile charges with one evaluation per pair. Particles are cut into
+// blocks of blockSize; tile (I, J) with I <= J adds each pair's force to i and, by Newton's third law, subtracts it
+// from j. The upper-triangular tile list is split into one contiguous range per work unit and every unit
+// accumulates into its own buffers, so there is no locking, and the buffers are reduced in unit order, so the
+// result does not depend on which thread ran which unit.
+public class PairwiseForceKernel {
+    private static final int REDUCTION_CHUNK = 4096;
+
+    private final ForkJoinPool pool;
+    private final int count;
+    private final int blockSize;
+    private final double[] charge;
+    private final double[] x;
+    private final double[] y;
+    // per-unit accumulators, cleared again by the reduction
+    private final double[][] forceX;
+    private final double[][] forceY;
+    private final double[] potential;
+    // unit u starts at tile (firstRow[u], firstColumn[u]) and handles tileCount[u] tiles in row-major order
+    private final int[] firstRow;
+    private final int[] firstColumn;
+    private final long[] tileCount;
+
+    // pool may be null to evaluate on the calling thread
+    public PairwiseForceKernel(double[] charge, int blockSize, ForkJoinPool pool) {
+        this.pool = pool;
+        this.count = charge.length;
+        this.blockSize = blockSize;
+        this.charge = charge.clone();
+        this.x = new double[count];
+        this.y = new double[count];
+
+        int blocks = (count + blockSize - 1) / blockSize;
+        long tiles = (long) blocks * (blocks + 1) / 2;
+        int units = (int) Math.max(1, Math.min(tiles, pool != null ? pool.getParallelism() : 1));
+        this.forceX = new double[units][count];
+        this.forceY = new double[units][count];
+        this.potential = new double[units];
+        this.firstRow = new int[units];
+        this.firstColumn = new int[units];
+        this.tileCount = new long[units];
+
+        int row = 0;
+        int column = 0;
+        for (int u = 0; u < units; u++) {
+            long start = tiles * u / units;
+            long end = tiles * (u + 1) / units;
+            firstRow[u] = row;
+            firstColumn[u] = column;
+            tileCount[u] = end - start;
+            for (long t = start; t < end; t++) {
+                if (++column == blocks) {
+                    column = ++row;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // positions and forces are interleaved (x0, y0, x1, y1, ...); returns the total pair potential energy
+    public double apply(double[] positions, double[] forces) {
+        for (int i = 0; i < count; i++) {
+            x[i] = positions[2 * i];
+            y[i] = positions[2 * i + 1];
+        }
+
+        forEach(tileCount.length, this::accumulate);
+        forEach((count + REDUCTION_CHUNK - 1) / REDUCTION_CHUNK, chunk -> reduce(chunk, forces));
+
+        double total = 0;
+        for (int u = 0; u < potential.length; u++) {
+            total += potential[u];
+        }
+        return total * Constants.COULOMB_CONSTANT;
+    }
+
+    private void accumulate(int unit) {
+        double[] unitForceX = forceX[unit];
+        double[] unitForceY = forceY[unit];
+        int blocks = (count + blockSize - 1) / blockSize;
+        int row = firstRow[unit];
+        int column = firstColumn[unit];
+        double unitPotential = 0;
+
+        for (long t = 0; t < tileCount[unit]; t++) {
+            int rowEnd = Math.min(count, (row + 1) * blockSize);
+            int columnStart = column * blockSize;
+            int columnEnd = Math.min(count, columnStart + blockSize);
+
+            for (int i = row * blockSize; i < rowEnd; i++) {
+                double xi = x[i];
+                double yi = y[i];
+                double qi = charge[i];
+                double fx = 0;
+                double fy = 0;
+
+                for (int j = row == column ? i + 1 : columnStart; j < columnEnd; j++) {
+                    double deltaX = xi - x[j];
+                    double deltaY = yi - y[j];
+                    double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                    double chargeOverDistance = qi * charge[j] * inverseDistance;
+                    double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+                    double pairX = deltaX * magnitude;
+                    double pairY = deltaY * magnitude;
+                    fx += pairX;
+                    fy += pairY;
+                    unitForceX[j] -= pairX;
+                    unitForceY[j] -= pairY;
+                    unitPotential += chargeOverDistance;
+                }
+
+                unitForceX[i] += fx;
+                unitForceY[i] += fy;
+            }
+
+            if (++column == blocks) {
+                column = ++row;
+            }
+        }
+
+        potential[unit] = unitPotential;
+    }
+
+    private void reduce(int chunk, double[] forces) {
+        int end = Math.min(count, (chunk + 1) * REDUCTION_CHUNK);
+        for (int i = chunk * REDUCTION_CHUNK; i < end; i++) {
+            double fx = 0;
+            double fy = 0;
+            for (int u = 0; u < forceX.length; u++) {
+                fx += forceX[u][i];
+                fy += forceY[u][i];
+                forceX[u][i] = 0;
+                forceY[u][i] = 0;
+            }
+            forces[2 * i] = fx * Constants.COULOMB_CONSTANT;
+            forces[2 * i + 1] = fy * Constants.COULOMB_CONSTANT;
+        }
+    }
+
+    private void forEach(int tasks, IntConsumer task) {
+        if (pool == null || tasks == 1) {
+            for (int t = 0; t < tasks; t++) {
+                task.accept(t);
+            }
+            return;
+        }
+        pool.invoke(new Range(0, tasks, task));
+    }
+
+    private static class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer task;
+
+        Range(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle, task), new Range(middle, to, task));
+        }
+    }
+}
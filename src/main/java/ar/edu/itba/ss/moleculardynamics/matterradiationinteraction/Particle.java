@@ -1,21 +1,28 @@
 package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
 
 public class Particle {
-    private Vector2D position;
-    private Vector2D velocity;
+    private double x;
+    private double y;
+    private double vx;
+    private double vy;
     private final double mass;
     private final double charge;
 
     public Particle(double x, double y, double vx, double vy, double mass, double charge) {
-        this.position = new Vector2D(x, y);
-        this.velocity = new Vector2D(vx, vy);
+        this.x = x;
+        this.y = y;
+        this.vx = vx;
+        this.vy = vy;
         this.mass = mass;
         this.charge = charge;
     }
 
     public Vector2D getElectrostaticForce(Particle other) {
-        double force = Constants.COULOMB_CONSTANT * charge * other.charge / Math.pow(this.distance(other), 3);
-        return this.position.subtract(other.position).scale(force);
+        double deltaX = this.x - other.x;
+        double deltaY = this.y - other.y;
+        double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        double force = Constants.COULOMB_CONSTANT * charge * other.charge * inverseDistance * inverseDistance * inverseDistance;
+        return new Vector2D(deltaX, deltaY).scale(force);
     }
 
     public double getElectrostaticPotentialEnergy(Particle other) {
@@ -23,23 +30,25 @@ public class Particle {
     }
 
     public double getX() {
-        return this.position.x();
+        return this.x;
     }
 
     public double distance(Particle other) {
-        return this.position.distance(other.position);
+        double deltaX = this.x - other.x;
+        double deltaY = this.y - other.y;
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
     }
 
     public double getY() {
-        return this.position.y();
+        return this.y;
     }
 
     public double getVx() {
-        return this.velocity.x();
+        return this.vx;
     }
 
     public double getVy() {
-        return this.velocity.y();
+        return this.vy;
     }
 
     public double getMass() {
@@ -51,10 +60,20 @@ public class Particle {
     }
 
     public void setPosition(Vector2D position) {
-        this.position = position;
+        setPosition(position.x(), position.y());
+    }
+
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
     }
 
     public void setVelocity(Vector2D velocity) {
-        this.velocity = velocity;
+        setVelocity(velocity.x(), velocity.y());
+    }
+
+    public void setVelocity(double vx, double vy) {
+        this.vx = vx;
+        this.vy = vy;
     }
 }
@@ -0,0 +1,33 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import java.util.SplittableRandom;
+
+// Seeds for independent tasks, derived from one base seed and the task's position in the batch (e.g. speed
+// bucket and sample number) with the SplitMix64 finalizer. A task's random stream therefore depends only on where
+// it sits in the batch, never on which thread runs it or in what order, and printing the derived seed is enough to
+// replay that single task.
+public final class Seeds {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private Seeds() {
+    }
+
+    // for runs without a configured seed; print it so the run can still be replayed
+    public static long fresh() {
+        return new SplittableRandom().nextLong();
+    }
+
+    public static long derive(long seed, long... path) {
+        long hash = mix(seed + GOLDEN_GAMMA);
+        for (long index : path) {
+            hash = mix(hash ^ mix(index + GOLDEN_GAMMA));
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,65 +1,145 @@
 package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
 
-import ar.edu.itba.ss.odemethods.GearPredictorCorrector;
-import ar.edu.itba.ss.odemethods.OdeMethod;
-
+import ar.edu.itba.ss.config.Configuration;
+import ar.edu.itba.ss.metrics.SimulationMetrics;
+import ar.edu.itba.ss.odemethods.AdaptiveVectorOdeMethod;
+import ar.edu.itba.ss.odemethods.StepSizeController;
+import ar.edu.itba.ss.odemethods.VectorForce;
+import ar.edu.itba.ss.odemethods.VectorOdeMethod;
+import ar.edu.itba.ss.output.Sink;
+import ar.edu.itba.ss.output.Sinks;
+
+import java.io.DataInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Random;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 
 public class Simulation {
     private final static String STATIC_FILE_NAME = "static.txt";
     private final static String DYNAMIC_FILE_NAME = "dynamic.txt";
+    private final static String BINARY_DYNAMIC_FILE_NAME = "dynamic.bin";
     private final static String MATTER_FILE_NAME = "matter.txt";
     private final static String SUMMARY_FILE_NAME = "summary.txt";
     private final MatterParticles matterParticles;
+    private final ForceProvider forceProvider;
     private final Particle radiationParticle;
     private final double distanceBetweenParticles;
     private final double boxWidth;
     private final double boxHeight;
+    private final double initialHeight;
+    private final double initialSpeed;
+    private final double[] potentialForce = new double[2];
 
 
     public Simulation(int particlesPerRow, double distanceBetweenParticles, double initialHeight, double initialSpeed, double charge, double mass) {
-        this.matterParticles = new MatterParticles(particlesPerRow, distanceBetweenParticles, charge, mass);
+        this(new MatterParticles(particlesPerRow, distanceBetweenParticles, charge, mass), initialHeight, initialSpeed, charge, mass);
+    }
+
+    public Simulation(MatterParticles matterParticles, double initialHeight, double initialSpeed, double charge, double mass) {
+        this(matterParticles, matterParticles, initialHeight, initialSpeed, charge, mass);
+    }
+
+    public Simulation(MatterParticles matterParticles, ForceProvider forceProvider, double initialHeight, double initialSpeed, double charge, double mass) {
+        this.matterParticles = matterParticles;
+        this.forceProvider = forceProvider;
+        this.distanceBetweenParticles = matterParticles.getDistanceBetweenParticles();
         this.radiationParticle = new Particle(-distanceBetweenParticles, initialHeight, initialSpeed, 0, mass, charge);
-        this.boxWidth = this.boxHeight = distanceBetweenParticles * (particlesPerRow - 1);
-        this.distanceBetweenParticles = distanceBetweenParticles;
+        this.initialHeight = initialHeight;
+        this.initialSpeed = initialSpeed;
+        this.boxWidth = this.boxHeight = distanceBetweenParticles * (matterParticles.getParticlesPerRow() - 1);
+    }
+
+    public static double getAbsorptionDistance(double distanceBetweenParticles) {
+        return 0.01 * distanceBetweenParticles;
+    }
+
+    public static double getInitialHeight(int particlesPerRow, double distanceBetweenParticles, double initialHeightRatio) {
+        double L = (particlesPerRow - 1) * distanceBetweenParticles;
+        return (L / 2 - distanceBetweenParticles) + initialHeightRatio * 2 * distanceBetweenParticles;
     }
 
     public static void main(String[] args) throws IOException {
 
-        double charge = Math.pow(10, -19);
-        double mass = Math.pow(10, -27);
-        double distanceBetweenParticles = Math.pow(10, -8);
-        int particlesPerRow = 16;
+        Configuration configuration = Configuration.load(args);
+        String outputFormat = configuration.getString("outputFormat", "text");
+
+        // a resumed run takes its configuration from the snapshot instead of the (possibly random) properties
+        String outputFileName = outputFormat.equals("binary") ? BINARY_DYNAMIC_FILE_NAME : DYNAMIC_FILE_NAME;
+        Checkpoint checkpoint = Checkpoint.from(configuration, outputFileName);
+        Checkpoint.Header resumed = checkpoint != null && checkpoint.canResume() ? checkpoint.readHeader() : null;
+
+        // without initialHeightRatio the initial conditions are drawn from the seed, which goes to static.txt so
+        // that seed=<seed> replays the run; a resumed run takes them, and the seed that drew them, from the snapshot
+        boolean drawn = !configuration.contains("initialHeightRatio") && resumed == null;
+        Long seed = resumed != null ? resumed.seed() : drawn ? Long.valueOf(configuration.getLong("seed", Seeds.fresh())) : null;
+        if (checkpoint != null) {
+            checkpoint = checkpoint.withSeed(seed);
+        }
+        SimulationConfig config = SimulationConfig.from(configuration);
+        if (drawn) {
+            config = config.withRandomInitialConditions(seed, configuration.getDouble("speedJitter", 0));
+        }
+
+        double charge = config.charge();
+        double mass = config.mass();
+        double distanceBetweenParticles = config.distanceBetweenParticles();
+        int particlesPerRow = config.particlesPerRow();
         double L = (particlesPerRow - 1) * distanceBetweenParticles;
-        double dt = Math.pow(10, -15);
-        int dt2 = 1;
-        Random random = new Random();
 
-        double stepSize = Double.parseDouble(System.getProperty("stepSize", Double.toString(dt)));
-        int saveFrequency = Integer.parseInt(System.getProperty("saveFrequency", Integer.toString(dt2)));
-        double initialSpeed = Double.parseDouble(System.getProperty("initialSpeed", "50000"));
-        double initialHeightRatio = Double.parseDouble(System.getProperty("initialHeightRatio", Double.toString(random.nextDouble())));
+        double stepSize = config.stepSize();
+        int saveFrequency = config.saveFrequency();
+        double initialSpeed = config.initialSpeed();
+        String forceMode = config.forceMode();
+        IntegratorSettings integrator = config.integrator();
+
+        double initialHeight = config.getInitialHeight();
+
+        if (checkpoint != null && checkpoint.resume() && resumed == null) {
+            System.out.println("No checkpoint at " + checkpoint.path() + ", starting a fresh run");
+        }
+        if (resumed != null) {
+            initialHeight = resumed.initialHeight();
+            initialSpeed = resumed.initialSpeed();
+            stepSize = resumed.stepSize();
+            saveFrequency = resumed.saveFrequency();
+            checkpoint.truncateOutput(resumed);
+            System.out.println("Resuming from " + checkpoint.path());
+        }
 
-        double initialHeight = (L / 2 - distanceBetweenParticles) + initialHeightRatio * 2 * distanceBetweenParticles;
+        if (seed != null) {
+            System.out.println("Seed: " + seed);
+        }
         System.out.println("Initial height: " + initialHeight);
         System.out.println("Step size: " + stepSize);
+        System.out.println("Integrator: " + integrator.method());
 
-        Simulation simulation = new Simulation(particlesPerRow, distanceBetweenParticles, initialHeight, initialSpeed, charge, mass);
+        LatticeCache.Lattice lattice = new LatticeCache(configuration).get(config);
+        MatterParticles matterParticles = lattice.matterParticles();
+        Simulation simulation = new Simulation(matterParticles, lattice.forceProvider(), initialHeight, initialSpeed, charge, mass);
+
+        if (!ForceProviders.isExact(forceMode)) {
+            ForceProviderReport.Report report = ForceProviderReport.compare(matterParticles, simulation.forceProvider,
+                    ForceProviderReport.samplePositions(particlesPerRow, distanceBetweenParticles, 200), charge);
+            System.out.println("Force mode " + forceMode + " max relative error: force " + report.maxForceError() + ", potential " + report.maxPotentialError());
+        }
 
-        printStaticData(distanceBetweenParticles, particlesPerRow, L, L, initialHeight, initialSpeed, mass, charge, stepSize, saveFrequency);
+        printStaticData(distanceBetweenParticles, particlesPerRow, L, L, initialHeight, initialSpeed, mass, charge, stepSize, saveFrequency, seed);
         printMatter(simulation.matterParticles);
 
-        simulation.solveGear(stepSize, saveFrequency);
+        Sink trajectoryWriter = switch (outputFormat) {
+            case "text" -> new TextTrajectoryWriter(DYNAMIC_FILE_NAME, resumed != null);
+            case "binary" -> resumed != null ? BinaryTrajectoryWriter.append(BINARY_DYNAMIC_FILE_NAME) : new BinaryTrajectoryWriter(BINARY_DYNAMIC_FILE_NAME, distanceBetweenParticles, particlesPerRow, L, L, initialHeight, initialSpeed, mass, charge, stepSize, saveFrequency);
+            default -> throw new IllegalArgumentException("Unknown output format: " + outputFormat);
+        };
 
-    }
+        Sink sink = Sinks.from(configuration, trajectoryWriter, 5);
+        SimulationMetrics metrics = SimulationMetrics.from(configuration, "Simulation", "simulation");
+        SimulationResult result = simulation.solve(stepSize, integrator, saveFrequency, sink, checkpoint, metrics);
+        Sinks.printStatistics(sink);
+        System.out.println("Steps: " + result.steps() + ", force evaluations: " + result.forceEvaluations());
 
-    public static void printResult(Vector2D position, Vector2D velocity, double potentialEnergy, PrintWriter printWriter) {
-        printWriter.printf("%.23e %.23e %.23e %.23e %.23e\n", position.x(), position.y(), velocity.x(), velocity.y(), potentialEnergy);
     }
 
     public static void printMatter(MatterParticles matter) throws IOException {
@@ -72,10 +152,14 @@ public class Simulation {
         printWriter.close();
     }
 
-    public static void printStaticData(double distanceBetweenParticles, int particlesPerRow, double boxHeight, double boxWidth, double initialHeight, double initialSpeed, double mass, double charge, double stepSize, int saveFrequency) throws IOException {
+    // the seed, when known, is the last line
+    public static void printStaticData(double distanceBetweenParticles, int particlesPerRow, double boxHeight, double boxWidth, double initialHeight, double initialSpeed, double mass, double charge, double stepSize, int saveFrequency, Long seed) throws IOException {
         PrintWriter printWriter = new PrintWriter(new FileWriter(STATIC_FILE_NAME));
 
         printWriter.printf("%.23e\n%d\n%.23e %.23e\n%.23e\n%.23e\n%.23e\n%.23e\n%.23e\n%d\n", distanceBetweenParticles, particlesPerRow, boxHeight, boxWidth, initialHeight, initialSpeed, mass, charge, stepSize, saveFrequency);
+        if (seed != null) {
+            printWriter.printf("%d\n", seed);
+        }
 
         printWriter.close();
     }
@@ -89,85 +173,263 @@ public class Simulation {
     }
 
     public SimulationStatus isFinished(double dCut) {
-        boolean hitYLeftBoundary = Double.compare(radiationParticle.getX() + this.distanceBetweenParticles, 0.0) < 0;
+        return getStatus(radiationParticle.getX(), radiationParticle.getY(), distanceBetweenParticles, boxWidth, boxHeight, dCut);
+    }
+
+    public static SimulationStatus getStatus(double x, double y, double distanceBetweenParticles, double boxWidth, double boxHeight, double dCut) {
+        boolean hitYLeftBoundary = Double.compare(x + distanceBetweenParticles, 0.0) < 0;
         if (hitYLeftBoundary) return SimulationStatus.LEFT_ESCAPED;
 
-        boolean hitYRightBoundary = Double.compare(radiationParticle.getX(), boxWidth) > 0;
+        boolean hitYRightBoundary = Double.compare(x, boxWidth) > 0;
         if (hitYRightBoundary) return SimulationStatus.RIGHT_ESCAPED;
 
-        boolean hitXBottomBoundary = Double.compare(radiationParticle.getY(), 0.0) < 0;
+        boolean hitXBottomBoundary = Double.compare(y, 0.0) < 0;
         if (hitXBottomBoundary) return SimulationStatus.BOTTOM_ESCAPED;
 
-        boolean hitXTopBoundary = Double.compare(radiationParticle.getY(), boxHeight) > 0;
+        boolean hitXTopBoundary = Double.compare(y, boxHeight) > 0;
         if (hitXTopBoundary) return SimulationStatus.TOP_ESCAPED;
 
-        double xModulus = Math.abs(radiationParticle.getX()) % distanceBetweenParticles;
-        double yModulus = radiationParticle.getY() % distanceBetweenParticles;
+        boolean wasAbsorbed = CrossingDetector.getNearestSiteDistance(x, y, distanceBetweenParticles) < dCut;
+        if (wasAbsorbed) return SimulationStatus.ABSORBED;
 
-        Vector2D positionInSquare = new Vector2D(xModulus, yModulus);
+        return SimulationStatus.NOT_FINISHED;
+    }
 
-        // (0,0)
-        double upperLeftDistance = positionInSquare.distance(new Vector2D(0, 0));
-        // (d, 0)
-        double upperRightDistance = positionInSquare.distance(new Vector2D(distanceBetweenParticles, 0));
-        // (0, d)
-        double lowerLeftDistance = positionInSquare.distance(new Vector2D(0, distanceBetweenParticles));
-        // (d, d)
-        double lowerRightDistance = positionInSquare.distance(new Vector2D(distanceBetweenParticles, distanceBetweenParticles));
+    public void solveGear(double stepSize, int saveFrequency) throws IOException {
+        solveGear(stepSize, saveFrequency, new TextTrajectoryWriter(DYNAMIC_FILE_NAME));
+    }
 
-        boolean wasAbsorbed = upperLeftDistance < dCut || upperRightDistance < dCut || lowerLeftDistance < dCut || lowerRightDistance < dCut;
+    public void solveGear(double stepSize, int saveFrequency, Sink trajectoryWriter) throws IOException {
+        solve(stepSize, IntegratorSettings.FIXED_GEAR, saveFrequency, trajectoryWriter);
+    }
 
-        if(wasAbsorbed) return SimulationStatus.ABSORBED;
+    public SimulationResult solve(double stepSize, IntegratorSettings integrator, int saveFrequency, Sink trajectoryWriter) throws IOException {
+        return solve(stepSize, integrator, saveFrequency, trajectoryWriter, null);
+    }
 
-        return SimulationStatus.NOT_FINISHED;
+    public SimulationResult solve(double stepSize, IntegratorSettings integrator, int saveFrequency, Sink trajectoryWriter, Checkpoint checkpoint) throws IOException {
+        return solve(stepSize, integrator, saveFrequency, trajectoryWriter, checkpoint, null);
     }
 
-    public void solveGear(double stepSize, int saveFrequency) throws IOException {
+    public SimulationResult solve(double stepSize, IntegratorSettings integrator, int saveFrequency, Sink trajectoryWriter, Checkpoint checkpoint, SimulationMetrics metrics) throws IOException {
+        SimulationResult result;
 
-        Function<Particle, BiFunction<Double, Double, Double>> xForce = (p) -> (r, v) -> matterParticles.getTotalElectrostaticForce(p).x();
-        Function<Particle, BiFunction<Double, Double, Double>> yForce = (p) -> (r, v) -> matterParticles.getTotalElectrostaticForce(p).y();
+        try (trajectoryWriter) {
+            result = integrate(stepSize, integrator, saveFrequency, trajectoryWriter, checkpoint, metrics);
+        }
 
-        OdeMethod xSolver = new GearPredictorCorrector(radiationParticle.getX(), radiationParticle.getVx(), 0, 0, 0, xForce.apply(this.radiationParticle), radiationParticle.getMass(),false);
-        OdeMethod ySolver = new GearPredictorCorrector(radiationParticle.getY(), radiationParticle.getVy(), 0, 0, 0, yForce.apply(this.radiationParticle), radiationParticle.getMass(),false);
+        printSummaryData(result.status());
+        return result;
+    }
 
-        double dCut = 0.01 * distanceBetweenParticles;
+    public SimulationResult run(double stepSize) {
+        return run(stepSize, IntegratorSettings.FIXED_GEAR);
+    }
 
-        int currentStep = 0;
+    public SimulationResult run(double stepSize, IntegratorSettings integrator) {
+        return run(stepSize, integrator, null);
+    }
 
-        PrintWriter printWriter = new PrintWriter(new FileWriter(DYNAMIC_FILE_NAME));
+    public SimulationResult run(double stepSize, IntegratorSettings integrator, SimulationMetrics metrics) {
+        try {
+            return integrate(stepSize, integrator, 1, null, null, metrics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        Vector2D initialPosition = new Vector2D(radiationParticle.getX(), radiationParticle.getY());
-        Vector2D initialVelocity = new Vector2D(radiationParticle.getVx(), radiationParticle.getVy());
-        double initialPotentialEnergy = matterParticles.getTotalElectrostaticPotentialEnergy(radiationParticle);
+    // With an adaptive integrator stepSize is only the first attempt, and every step is capped to half a lattice
+    // spacing. Termination is event driven: each step is scanned for the first boundary or dCut crossing and the
+    // run ends exactly there, with the particle moved back to the crossing point.
+    // With a checkpoint, a snapshot is written every interval steps and a resumed run starts from the last one.
+    // With metrics, progress is published every publishInterval steps; the energy drift gauge costs one extra
+    // force evaluation per publish, which is not counted.
+    private SimulationResult integrate(double stepSize, IntegratorSettings integrator, int saveFrequency, Sink trajectoryWriter, Checkpoint checkpoint, SimulationMetrics metrics) throws IOException {
+
+        double charge = radiationParticle.getCharge();
+        long[] forceEvaluations = {0};
+        VectorForce force = (r, v, f) -> {
+            forceEvaluations[0]++;
+            forceProvider.getTotalElectrostaticForceAndPotential(r[0], r[1], charge, f);
+        };
+
+        double[] r0 = {radiationParticle.getX(), radiationParticle.getY()};
+        double[] v0 = {radiationParticle.getVx(), radiationParticle.getVy()};
+
+        AdaptiveVectorOdeMethod adaptiveSolver = integrator.isAdaptive()
+                ? integrator.createAdaptiveMethod(r0, v0, force, radiationParticle.getMass())
+                : null;
+        VectorOdeMethod solver = adaptiveSolver != null
+                ? adaptiveSolver
+                : integrator.createMethod(r0, v0, force, matterParticles, charge, radiationParticle.getMass());
+
+        StepSizeController controller = adaptiveSolver != null
+                ? integrator.createController(stepSize, distanceBetweenParticles, radiationParticle.getVx())
+                : null;
+
+        double dCut = getAbsorptionDistance(distanceBetweenParticles);
+        CrossingDetector detector = new CrossingDetector(distanceBetweenParticles, boxWidth, boxHeight, dCut);
+
+        long currentStep = 0;
+        double time = 0;
+        double trajectoryLength = 0;
+
+        double initialPotentialEnergy = getPotentialEnergy();
+        double initialEnergy = getKineticEnergy() + initialPotentialEnergy;
+
+        double[] row = new double[5];
+        double[] crossing = new double[4];
+
+        boolean resuming = checkpoint != null && checkpoint.canResume();
+        if (resuming) {
+            try (DataInputStream input = checkpoint.open()) {
+                Checkpoint.Header header = Checkpoint.readHeader(input);
+                Checkpoint.Header expected = getCheckpointHeader(checkpoint, stepSize, integrator, saveFrequency, header.outputLength());
+                if (!header.equals(expected)) {
+                    throw new IllegalStateException("Checkpoint " + checkpoint.path() + " was written for a different configuration: "
+                            + header + ", this run is " + expected);
+                }
+                currentStep = input.readLong();
+                time = input.readDouble();
+                trajectoryLength = input.readDouble();
+                initialEnergy = input.readDouble();
+                forceEvaluations[0] = input.readLong();
+                radiationParticle.setPosition(input.readDouble(), input.readDouble());
+                radiationParticle.setVelocity(input.readDouble(), input.readDouble());
+                solver.restoreState(input);
+                if (controller != null) {
+                    controller.restoreState(input);
+                }
+            }
+        }
 
-        printResult(initialPosition, initialVelocity, initialPotentialEnergy, printWriter);
+        if (metrics != null) {
+            metrics.startRun(trajectoryWriter != null ? trajectoryWriter::getBytesWritten : null, currentStep);
+        }
 
-        SimulationStatus status;
+        if (trajectoryWriter != null && !resuming) {
+            writeRow(row, initialPotentialEnergy, trajectoryWriter);
+        }
+
+        SimulationStatus status = isFinished(dCut);
+
+        while (status == SimulationStatus.NOT_FINISHED) {
+            double stepTaken = stepSize;
+            if (adaptiveSolver != null) {
+                double speed = Math.hypot(radiationParticle.getVx(), radiationParticle.getVy());
+                stepTaken = adaptiveSolver.adaptiveStep(controller, 0.5 * distanceBetweenParticles / speed);
+            } else {
+                solver.step(stepSize);
+            }
 
-        while ((status = isFinished(dCut)) == SimulationStatus.NOT_FINISHED) {
-            double nextXPosition = xSolver.getNextPosition(stepSize);
-            double nextYPosition = ySolver.getNextPosition(stepSize);
-            double nextXVelocity = xSolver.getNextVelocity(stepSize);
-            double nextYVelocity = ySolver.getNextVelocity(stepSize);
+            double previousX = radiationParticle.getX();
+            double previousY = radiationParticle.getY();
+            double nextXPosition = solver.getPosition(0);
+            double nextYPosition = solver.getPosition(1);
+            double nextXVelocity = solver.getVelocity(0);
+            double nextYVelocity = solver.getVelocity(1);
+
+            status = detector.detect(previousX, previousY, radiationParticle.getVx(), radiationParticle.getVy(),
+                    nextXPosition, nextYPosition, nextXVelocity, nextYVelocity, stepTaken);
+
+            if (status != SimulationStatus.NOT_FINISHED) {
+                detector.interpolate(detector.getFraction(), crossing);
+                nextXPosition = crossing[0];
+                nextYPosition = crossing[1];
+                nextXVelocity = crossing[2];
+                nextYVelocity = crossing[3];
+                stepTaken *= detector.getFraction();
+            }
 
-            Vector2D nextPosition = new Vector2D(nextXPosition, nextYPosition);
-            Vector2D nextVelocity = new Vector2D(nextXVelocity, nextYVelocity);
+            double deltaX = nextXPosition - previousX;
+            double deltaY = nextYPosition - previousY;
+            trajectoryLength += Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+            time += stepTaken;
 
-            radiationParticle.setPosition(nextPosition);
-            radiationParticle.setVelocity(nextVelocity);
+            radiationParticle.setPosition(nextXPosition, nextYPosition);
+            radiationParticle.setVelocity(nextXVelocity, nextYVelocity);
 
             currentStep++;
 
-            if (currentStep % saveFrequency == 0) {
-                double potentialEnergy = matterParticles.getTotalElectrostaticPotentialEnergy(radiationParticle);
-                printResult(nextPosition, nextVelocity, potentialEnergy, printWriter);
+            // the crossing point is always written so the trajectory ends where the run did
+            if (trajectoryWriter != null && (currentStep % saveFrequency == 0 || status != SimulationStatus.NOT_FINISHED)) {
+                double potentialEnergy = getPotentialEnergy();
+                writeRow(row, potentialEnergy, trajectoryWriter);
+            }
+
+            if (checkpoint != null && status == SimulationStatus.NOT_FINISHED && currentStep % checkpoint.interval() == 0) {
+                writeCheckpoint(checkpoint, stepSize, integrator, saveFrequency, trajectoryWriter,
+                        currentStep, time, trajectoryLength, initialEnergy, forceEvaluations[0], solver, controller);
+            }
+
+            if (metrics != null && currentStep % metrics.getPublishInterval() == 0) {
+                metrics.publish(currentStep, forceEvaluations[0], time, getEnergyDrift(initialEnergy));
             }
+        }
 
+        double energyDrift = getEnergyDrift(initialEnergy);
+        if (metrics != null) {
+            metrics.finishRun(currentStep, forceEvaluations[0], time, energyDrift, status.name());
         }
 
-        printSummaryData(status);
+        return new SimulationResult(status, trajectoryLength, currentStep, energyDrift, forceEvaluations[0], time);
+    }
 
-        printWriter.close();
+    private Checkpoint.Header getCheckpointHeader(Checkpoint checkpoint, double stepSize, IntegratorSettings integrator, int saveFrequency, long outputLength) {
+        return new Checkpoint.Header(matterParticles.getParticlesPerRow(), distanceBetweenParticles, initialHeight, initialSpeed,
+                radiationParticle.getCharge(), radiationParticle.getMass(), stepSize, saveFrequency, checkpoint.forceMode(), integrator,
+                checkpoint.seed(), outputLength);
+    }
+
+    private void writeCheckpoint(Checkpoint checkpoint, double stepSize, IntegratorSettings integrator, int saveFrequency, Sink trajectoryWriter,
+                                 long currentStep, double time, double trajectoryLength, double initialEnergy, long forceEvaluations,
+                                 VectorOdeMethod solver, StepSizeController controller) throws IOException {
+        // the rows the snapshot counts must be on disk before it is, or a crash could leave it pointing past them
+        long outputLength = 0;
+        if (trajectoryWriter != null) {
+            trajectoryWriter.sync();
+            outputLength = Files.size(checkpoint.outputPath());
+        }
+
+        checkpoint.write(getCheckpointHeader(checkpoint, stepSize, integrator, saveFrequency, outputLength), output -> {
+            output.writeLong(currentStep);
+            output.writeDouble(time);
+            output.writeDouble(trajectoryLength);
+            output.writeDouble(initialEnergy);
+            output.writeLong(forceEvaluations);
+            output.writeDouble(radiationParticle.getX());
+            output.writeDouble(radiationParticle.getY());
+            output.writeDouble(radiationParticle.getVx());
+            output.writeDouble(radiationParticle.getVy());
+            solver.saveState(output);
+            if (controller != null) {
+                controller.saveState(output);
+            }
+        });
+    }
+
+    private void writeRow(double[] row, double potentialEnergy, Sink trajectoryWriter) throws IOException {
+        row[0] = radiationParticle.getX();
+        row[1] = radiationParticle.getY();
+        row[2] = radiationParticle.getVx();
+        row[3] = radiationParticle.getVy();
+        row[4] = potentialEnergy;
+        trajectoryWriter.write(row);
+    }
+
+    private double getPotentialEnergy() {
+        return forceProvider.getTotalElectrostaticForceAndPotential(radiationParticle.getX(), radiationParticle.getY(), radiationParticle.getCharge(), potentialForce);
+    }
+
+    private double getEnergyDrift(double initialEnergy) {
+        double energy = getKineticEnergy() + getPotentialEnergy();
+        return (energy - initialEnergy) / Math.abs(initialEnergy);
+    }
+
+    private double getKineticEnergy() {
+        double vx = radiationParticle.getVx();
+        double vy = radiationParticle.getVy();
+        return 0.5 * radiationParticle.getMass() * (vx * vx + vy * vy);
     }
 
 }
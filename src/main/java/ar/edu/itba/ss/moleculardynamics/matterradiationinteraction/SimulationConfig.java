@@ -0,0 +1,94 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.config.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+
+// Everything one projectile run needs. Immutable, so a batch of them can be handed to worker threads as is.
+public record SimulationConfig(int particlesPerRow, double distanceBetweenParticles, double charge, double mass,
+                               double initialSpeed, double initialHeightRatio, double stepSize, int saveFrequency,
+                               String forceMode, IntegratorSettings integrator) {
+    // batch expands these in order, so the last one varies fastest; each also accepts its plural as the key
+    private static final String[] SWEEP_KEYS = {"particlesPerRow", "forceMode", "integrator", "initialSpeed", "initialHeightRatio", "stepSize"};
+
+    public record LatticeKey(int particlesPerRow, double distanceBetweenParticles, double charge, double mass, String forceMode) {
+    }
+
+    public static SimulationConfig from(Configuration configuration) {
+        return new SimulationConfig(
+                configuration.getInt("particlesPerRow", 16),
+                configuration.getDouble("distanceBetweenParticles", 1e-8),
+                configuration.getDouble("charge", 1e-19),
+                configuration.getDouble("mass", 1e-27),
+                configuration.getDouble("initialSpeed", 50000),
+                configuration.getDouble("initialHeightRatio", 0.5),
+                configuration.getDouble("stepSize", 1e-15),
+                configuration.getInt("saveFrequency", 1),
+                configuration.getString("forceMode", "direct"),
+                IntegratorSettings.from(configuration));
+    }
+
+    // One run per combination of the comma separated values of the sweep keys. Without height ratios the
+    // heightsPerSpeed ratios evenly spaced over [0, 1] are used, as in Ensemble.
+    public static List<SimulationConfig> batch(Configuration configuration) {
+        if (!configuration.contains("initialHeightRatio") && !configuration.contains("initialHeightRatios")) {
+            StringJoiner ratios = new StringJoiner(",");
+            for (double ratio : Ensemble.linspace(0, 1, configuration.getInt("heightsPerSpeed", 10))) {
+                ratios.add(Double.toString(ratio));
+            }
+            configuration = configuration.with("initialHeightRatio", ratios.toString());
+        }
+
+        List<Configuration> expanded = List.of(configuration);
+        for (String key : SWEEP_KEYS) {
+            String[] values = configuration.getStrings(key, configuration.get(key + "s"));
+            if (values.length == 0) {
+                continue;
+            }
+
+            List<Configuration> next = new ArrayList<>(expanded.size() * values.length);
+            for (Configuration partial : expanded) {
+                for (String value : values) {
+                    next.add(partial.with(key, value));
+                }
+            }
+            expanded = next;
+        }
+
+        List<SimulationConfig> runs = new ArrayList<>(expanded.size());
+        for (Configuration run : expanded) {
+            runs.add(from(run));
+        }
+        return runs;
+    }
+
+    public SimulationConfig withInitialConditions(double initialSpeed, double initialHeightRatio) {
+        return new SimulationConfig(particlesPerRow, distanceBetweenParticles, charge, mass, initialSpeed, initialHeightRatio,
+                stepSize, saveFrequency, forceMode, integrator);
+    }
+
+    // the run drawn from seed: initialHeightRatio uniformly in [0, 1), then the speed uniformly within speedJitter
+    // of initialSpeed, so the seed alone replays it
+    public SimulationConfig withRandomInitialConditions(long seed, double speedJitter) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double ratio = random.nextDouble();
+        double speed = speedJitter > 0 ? initialSpeed + random.nextDouble(-speedJitter, speedJitter) : initialSpeed;
+        return withInitialConditions(speed, ratio);
+    }
+
+    public LatticeKey getLatticeKey() {
+        return new LatticeKey(particlesPerRow, distanceBetweenParticles, charge, mass, forceMode);
+    }
+
+    public double getInitialHeight() {
+        return Simulation.getInitialHeight(particlesPerRow, distanceBetweenParticles, initialHeightRatio);
+    }
+
+    public Simulation createSimulation(LatticeCache lattices) {
+        LatticeCache.Lattice lattice = lattices.get(this);
+        return new Simulation(lattice.matterParticles(), lattice.forceProvider(), getInitialHeight(), initialSpeed, charge, mass);
+    }
+}
@@ -0,0 +1,4 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+public record SimulationResult(SimulationStatus status, double trajectoryLength, long steps, double energyDrift, long forceEvaluations, double time) {
+}
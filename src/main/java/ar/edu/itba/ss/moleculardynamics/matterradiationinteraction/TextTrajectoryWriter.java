@@ -0,0 +1,55 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import ar.edu.itba.ss.output.CountingOutputStream;
+import ar.edu.itba.ss.output.Sink;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+public class TextTrajectoryWriter implements Sink {
+    private final FileOutputStream file;
+    private final CountingOutputStream output;
+    private final PrintWriter printWriter;
+
+    public TextTrajectoryWriter(String fileName) throws IOException {
+        this(fileName, false);
+    }
+
+    public TextTrajectoryWriter(String fileName, boolean append) throws IOException {
+        this.file = new FileOutputStream(fileName, append);
+        this.output = new CountingOutputStream(file);
+        this.printWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(output), 1 << 16));
+    }
+
+    @Override
+    public void write(double[] row) {
+        printWriter.printf("%.23e %.23e %.23e %.23e %.23e\n", row[0], row[1], row[2], row[3], row[4]);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        printWriter.flush();
+        if (printWriter.checkError()) {
+            throw new IOException("Could not write the trajectory");
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        file.getChannel().force(true);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return output.getCount();
+    }
+
+    @Override
+    public void close() {
+        printWriter.close();
+    }
+}
@@ -0,0 +1,6 @@
+package ar.edu.itba.ss.odemethods;
+
+public interface AdaptiveVectorOdeMethod extends VectorOdeMethod {
+    // retries until the controller accepts a step no longer than maxStepSize and returns the size taken
+    double adaptiveStep(StepSizeController controller, double maxStepSize);
+}
@@ -1,6 +1,8 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.BiFunction;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class BeemanMethod implements OdeMethod {
 
@@ -10,10 +12,10 @@ public class BeemanMethod implements OdeMethod {
     private double previousVelocity;
     private double currentAcceleration;
     private double previousAcceleration;
-    private BiFunction<Double, Double, Double> force;
+    private Force force;
     private double mass;
 
-    public BeemanMethod(double r0, double v0, BiFunction<Double, Double, Double> force, double mass) {
+    public BeemanMethod(double r0, double v0, Force force, double mass) {
         this.currentPosition = r0;
         this.currentVelocity = v0;
 
@@ -61,23 +63,40 @@ public class BeemanMethod implements OdeMethod {
     }
 
     @Override
-    public double[] solve(int steps, double stepSize) {
+    public double getPosition() {
+        return currentPosition;
+    }
+
+    @Override
+    public double getVelocity() {
+        return currentVelocity;
+    }
+
+    @Override
+    public void initialize(double stepSize) {
         // use euler to calculate previous position and velocity
         EulerMethod euler = new EulerMethod(currentPosition, currentVelocity, force, mass);
         this.previousPosition = euler.getNextPosition(-stepSize);
         this.previousVelocity = euler.getNextVelocity(-stepSize);
+    }
 
-        euler.update(this.previousPosition, this.previousVelocity);
-
-        double[] positions = new double[steps];
-
-        positions[0] = this.currentPosition;
-
-        for (int i = 1; i < steps; i++) {
-            positions[i] = getNextPosition(stepSize);
-            getNextVelocity(stepSize);
-        }
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(currentPosition);
+        output.writeDouble(currentVelocity);
+        output.writeDouble(previousPosition);
+        output.writeDouble(previousVelocity);
+        output.writeDouble(currentAcceleration);
+        output.writeDouble(previousAcceleration);
+    }
 
-        return positions;
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        currentPosition = input.readDouble();
+        currentVelocity = input.readDouble();
+        previousPosition = input.readDouble();
+        previousVelocity = input.readDouble();
+        currentAcceleration = input.readDouble();
+        previousAcceleration = input.readDouble();
     }
 }
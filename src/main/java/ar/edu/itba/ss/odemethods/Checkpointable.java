@@ -0,0 +1,13 @@
+package ar.edu.itba.ss.odemethods;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Everything an object needs to continue bit-for-bit after a restart. Constructor arguments (forces, masses,
+// coefficients) are not part of the state: restoreState is called on an instance built with the same ones.
+public interface Checkpointable {
+    void saveState(DataOutput output) throws IOException;
+
+    void restoreState(DataInput input) throws IOException;
+}
@@ -1,6 +1,8 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.BiFunction;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class DampedHarmonicOscillatorAnalyticMethod implements OdeMethod{
 
@@ -18,35 +20,60 @@ public class DampedHarmonicOscillatorAnalyticMethod implements OdeMethod{
         this.currentTimeStep = 0;
     }
 
-    private double getNextAnalyticPosition(double stepSize) {
-        double nextPosition = amplitude
-                * Math.exp(-0.5 * gamma * currentTimeStep / mass)
+    private double getAnalyticPosition(double time) {
+        return amplitude
+                * Math.exp(-0.5 * gamma * time / mass)
                 * Math.cos(Math.sqrt(k / mass
-                - 0.25 * gamma * gamma / (mass * mass)) * currentTimeStep);
+                - 0.25 * gamma * gamma / (mass * mass)) * time);
+    }
 
-        currentTimeStep += stepSize;
+    private double getAnalyticVelocity(double time) {
+        double decay = 0.5 * gamma / mass;
+        double frequency = Math.sqrt(k / mass - 0.25 * gamma * gamma / (mass * mass));
 
-        return nextPosition;
+        return -amplitude
+                * Math.exp(-decay * time)
+                * (decay * Math.cos(frequency * time) + frequency * Math.sin(frequency * time));
+    }
+
+    @Override
+    public void initialize(double stepSize) {
+        currentTimeStep = 0;
     }
 
-    public double[] solve(int steps, double stepSize) {
-        double[] positions = new double[steps];
-        
-        for (int i = 0; i < steps; i++) {
-            positions[i] = getNextAnalyticPosition(stepSize);
-        }
-        
-        return positions;
+    @Override
+    public void step(double stepSize) {
+        currentTimeStep += stepSize;
     }
 
     @Override
     public double getNextVelocity(double stepSize) {
-        return 0;
+        return getAnalyticVelocity(currentTimeStep);
     }
 
     @Override
     public double getNextPosition(double stepSize) {
-        return 0;
+        currentTimeStep += stepSize;
+        return getAnalyticPosition(currentTimeStep);
     }
 
+    @Override
+    public double getPosition() {
+        return getAnalyticPosition(currentTimeStep);
+    }
+
+    @Override
+    public double getVelocity() {
+        return getAnalyticVelocity(currentTimeStep);
+    }
+
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(currentTimeStep);
+    }
+
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        currentTimeStep = input.readDouble();
+    }
 }
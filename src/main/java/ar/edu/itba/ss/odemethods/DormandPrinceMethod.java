@@ -0,0 +1,170 @@
+package ar.edu.itba.ss.odemethods;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Dormand-Prince 5(4) embedded Runge-Kutta pair for r'' = F(r, v) / m, integrated as the first-order system
+// (r, v)' = (v, F / m). The solution advances with the fifth-order weights and the difference with the
+// embedded fourth-order weights is the local error estimate. The last stage is evaluated at the new state
+// (first same as last), so an accepted step costs six force evaluations.
+public class DormandPrinceMethod implements AdaptiveVectorOdeMethod {
+    private static final int STAGES = 7;
+    private static final double[][] A = {
+            {},
+            {1.0 / 5.0},
+            {3.0 / 40.0, 9.0 / 40.0},
+            {44.0 / 45.0, -56.0 / 15.0, 32.0 / 9.0},
+            {19372.0 / 6561.0, -25360.0 / 2187.0, 64448.0 / 6561.0, -212.0 / 729.0},
+            {9017.0 / 3168.0, -355.0 / 33.0, 46732.0 / 5247.0, 49.0 / 176.0, -5103.0 / 18656.0},
+            {35.0 / 384.0, 0.0, 500.0 / 1113.0, 125.0 / 192.0, -2187.0 / 6784.0, 11.0 / 84.0}
+    };
+    // fifth-order weights are the last row of A; these are fifth minus fourth order
+    private static final double[] ERROR_WEIGHTS = {
+            35.0 / 384.0 - 5179.0 / 57600.0,
+            0.0,
+            500.0 / 1113.0 - 7571.0 / 16695.0,
+            125.0 / 192.0 - 393.0 / 640.0,
+            -2187.0 / 6784.0 + 92097.0 / 339200.0,
+            11.0 / 84.0 - 187.0 / 2100.0,
+            -1.0 / 40.0
+    };
+    private static final int ORDER = 4;
+
+    private final VectorForce force;
+    private final double mass;
+    private final int dimension;
+    private final double[] position;
+    private final double[] velocity;
+    // stage derivatives: positionSlopes[s][i] is a velocity, velocitySlopes[s][i] an acceleration
+    private final double[][] positionSlopes;
+    private final double[][] velocitySlopes;
+    private final double[] stagePosition;
+    private final double[] stageVelocity;
+    private final double[] stageForce;
+    // first stage of the next step, already known when the previous step was accepted
+    private boolean firstStageReady;
+
+    public DormandPrinceMethod(double[] r0, double[] v0, VectorForce force, double mass) {
+        this.force = force;
+        this.mass = mass;
+        this.dimension = r0.length;
+        this.position = r0.clone();
+        this.velocity = v0.clone();
+        this.positionSlopes = new double[STAGES][dimension];
+        this.velocitySlopes = new double[STAGES][dimension];
+        this.stagePosition = new double[dimension];
+        this.stageVelocity = new double[dimension];
+        this.stageForce = new double[dimension];
+    }
+
+    @Override
+    public void step(double stepSize) {
+        attempt(stepSize, null);
+        accept();
+    }
+
+    @Override
+    public double adaptiveStep(StepSizeController controller, double maxStepSize) {
+        while (true) {
+            double stepSize = Math.min(controller.getStepSize(), maxStepSize);
+
+            double errorNorm = attempt(stepSize, controller);
+            if (controller.adapt(stepSize, errorNorm, ORDER)) {
+                accept();
+                return stepSize;
+            }
+        }
+    }
+
+    // evaluates every stage; the last one leaves the fifth-order solution in stagePosition and stageVelocity
+    private double attempt(double stepSize, StepSizeController controller) {
+        if (!firstStageReady) {
+            evaluate(position, velocity, 0);
+            firstStageReady = true;
+        }
+
+        for (int s = 1; s < STAGES; s++) {
+            for (int i = 0; i < dimension; i++) {
+                double deltaPosition = 0;
+                double deltaVelocity = 0;
+                for (int j = 0; j < s; j++) {
+                    deltaPosition += A[s][j] * positionSlopes[j][i];
+                    deltaVelocity += A[s][j] * velocitySlopes[j][i];
+                }
+                stagePosition[i] = position[i] + stepSize * deltaPosition;
+                stageVelocity[i] = velocity[i] + stepSize * deltaVelocity;
+            }
+            evaluate(stagePosition, stageVelocity, s);
+        }
+
+        double errorNorm = 0;
+        if (controller != null) {
+            for (int i = 0; i < dimension; i++) {
+                double positionError = 0;
+                double velocityError = 0;
+                for (int s = 0; s < STAGES; s++) {
+                    positionError += ERROR_WEIGHTS[s] * positionSlopes[s][i];
+                    velocityError += ERROR_WEIGHTS[s] * velocitySlopes[s][i];
+                }
+                errorNorm = Math.max(errorNorm, controller.getPositionError(stepSize * positionError, position[i]));
+                errorNorm = Math.max(errorNorm, controller.getVelocityError(stepSize * velocityError, velocity[i]));
+            }
+        }
+
+        return errorNorm;
+    }
+
+    private void accept() {
+        System.arraycopy(stagePosition, 0, position, 0, dimension);
+        System.arraycopy(stageVelocity, 0, velocity, 0, dimension);
+
+        double[] slopes = positionSlopes[0];
+        positionSlopes[0] = positionSlopes[STAGES - 1];
+        positionSlopes[STAGES - 1] = slopes;
+
+        slopes = velocitySlopes[0];
+        velocitySlopes[0] = velocitySlopes[STAGES - 1];
+        velocitySlopes[STAGES - 1] = slopes;
+    }
+
+    private void evaluate(double[] r, double[] v, int stage) {
+        force.apply(r, v, stageForce);
+        for (int i = 0; i < dimension; i++) {
+            positionSlopes[stage][i] = v[i];
+            velocitySlopes[stage][i] = stageForce[i] / mass;
+        }
+    }
+
+    @Override
+    public double getPosition(int component) {
+        return position[component];
+    }
+
+    @Override
+    public double getVelocity(int component) {
+        return velocity[component];
+    }
+
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeBoolean(firstStageReady);
+        for (int i = 0; i < dimension; i++) {
+            output.writeDouble(position[i]);
+            output.writeDouble(velocity[i]);
+            output.writeDouble(positionSlopes[0][i]);
+            output.writeDouble(velocitySlopes[0][i]);
+        }
+    }
+
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        firstStageReady = input.readBoolean();
+        for (int i = 0; i < dimension; i++) {
+            position[i] = input.readDouble();
+            velocity[i] = input.readDouble();
+            positionSlopes[0][i] = input.readDouble();
+            velocitySlopes[0][i] = input.readDouble();
+        }
+    }
+}
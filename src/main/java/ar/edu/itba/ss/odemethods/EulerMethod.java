@@ -1,16 +1,18 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.BiFunction;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class EulerMethod implements OdeMethod {
 
-    private final BiFunction<Double, Double, Double> force;
+    private final Force force;
     private final double mass;
     private double currentPosition;
     private double currentVelocity;
 
 
-    public EulerMethod(double r0, double v0, BiFunction<Double, Double, Double> force, double mass) {
+    public EulerMethod(double r0, double v0, Force force, double mass) {
         this.currentPosition = r0;
         this.currentVelocity = v0;
         this.force = force;
@@ -43,16 +45,24 @@ public class EulerMethod implements OdeMethod {
     }
 
     @Override
-    public double[] solve(int steps, double stepSize) {
-        double[] positions = new double[steps];
+    public double getPosition() {
+        return currentPosition;
+    }
 
-        positions[0] = currentPosition;
+    @Override
+    public double getVelocity() {
+        return currentVelocity;
+    }
 
-        for (int i = 1; i < steps; i++) {
-            positions[i] = getNextPosition(stepSize);
-            getNextVelocity(stepSize);
-        }
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(currentPosition);
+        output.writeDouble(currentVelocity);
+    }
 
-        return positions;
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        currentPosition = input.readDouble();
+        currentVelocity = input.readDouble();
     }
 }
@@ -0,0 +1,6 @@
+package ar.edu.itba.ss.odemethods;
+
+@FunctionalInterface
+public interface Force {
+    double apply(double r, double v);
+}
@@ -1,9 +1,11 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.BiFunction;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class GearPredictorCorrector implements OdeMethod {
-    private final BiFunction<Double, Double, Double> force;
+    private final Force force;
     private final double mass;
     private double currentR;
     private double currentR1;
@@ -19,7 +21,7 @@ public class GearPredictorCorrector implements OdeMethod {
     private double alpha4;
     private double alpha5;
 
-    public GearPredictorCorrector(double r0, double v0, double initialR3, double initialR4, double initialR5, BiFunction<Double, Double, Double> force, double mass, boolean forceIsVelocityDependent) {
+    public GearPredictorCorrector(double r0, double v0, double initialR3, double initialR4, double initialR5, Force force, double mass, boolean forceIsVelocityDependent) {
         this.force = force;
         this.mass = mass;
         this.currentR5 = initialR5;
@@ -141,16 +143,37 @@ public class GearPredictorCorrector implements OdeMethod {
     }
 
     @Override
-    public double[] solve(int steps, double stepSize) {
-        double[] positions = new double[steps];
+    public double getPosition() {
+        return currentR;
+    }
 
-        positions[0] = this.currentR;
+    @Override
+    public double getVelocity() {
+        return currentR1;
+    }
 
-        for (int step = 1; step < steps; step++) {
-            positions[step] = getNextPosition(stepSize);
-        }
+    @Override
+    public void step(double stepSize) {
+        getNextPosition(stepSize);
+    }
 
-        return positions;
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(currentR);
+        output.writeDouble(currentR1);
+        output.writeDouble(currentR2);
+        output.writeDouble(currentR3);
+        output.writeDouble(currentR4);
+        output.writeDouble(currentR5);
     }
 
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        currentR = input.readDouble();
+        currentR1 = input.readDouble();
+        currentR2 = input.readDouble();
+        currentR3 = input.readDouble();
+        currentR4 = input.readDouble();
+        currentR5 = input.readDouble();
+    }
 }
@@ -1,10 +1,33 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.Predicate;
-
-public interface OdeMethod {
-    double[] solve(int steps, double stepSize);
+public interface OdeMethod extends Checkpointable {
     double getNextPosition(double stepSize);
 
     double getNextVelocity(double stepSize);
+
+    double getPosition();
+
+    double getVelocity();
+
+    // prepares any history the method needs before its first step
+    default void initialize(double stepSize) {
+    }
+
+    default void step(double stepSize) {
+        getNextPosition(stepSize);
+        getNextVelocity(stepSize);
+    }
+
+    // pushes step 0 and then every decimation-th step to the consumer without storing anything
+    default void solve(long steps, double stepSize, int decimation, StepConsumer consumer) {
+        initialize(stepSize);
+        consumer.accept(0, getPosition(), getVelocity());
+
+        for (long step = 1; step < steps; step++) {
+            step(stepSize);
+            if (step % decimation == 0) {
+                consumer.accept(step, getPosition(), getVelocity());
+            }
+        }
+    }
 }
@@ -0,0 +1,6 @@
+package ar.edu.itba.ss.odemethods;
+
+@FunctionalInterface
+public interface StepConsumer {
+    void accept(long step, double position, double velocity);
+}
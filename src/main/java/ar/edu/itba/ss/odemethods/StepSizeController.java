@@ -0,0 +1,86 @@
+package ar.edu.itba.ss.odemethods;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Elementary error-per-step controller shared by the adaptive integrators. Each component's error is measured
+// against absoluteTolerance + relativeTolerance * |value|, and the step is accepted when the worst ratio is <= 1.
+public class StepSizeController implements Checkpointable {
+    private static final double SAFETY = 0.9;
+    private static final double MIN_FACTOR = 0.2;
+    private static final double MAX_FACTOR = 5.0;
+
+    private final double relativeTolerance;
+    private final double positionTolerance;
+    private final double velocityTolerance;
+    private final double minStepSize;
+    private final double maxStepSize;
+    private double stepSize;
+    private long acceptedSteps;
+    private long rejectedSteps;
+
+    public StepSizeController(double initialStepSize, double minStepSize, double maxStepSize, double relativeTolerance, double positionTolerance, double velocityTolerance) {
+        if (minStepSize <= 0 || maxStepSize < minStepSize) {
+            throw new IllegalArgumentException("Step size bounds must satisfy 0 < minStepSize <= maxStepSize");
+        }
+        this.relativeTolerance = relativeTolerance;
+        this.positionTolerance = positionTolerance;
+        this.velocityTolerance = velocityTolerance;
+        this.minStepSize = minStepSize;
+        this.maxStepSize = maxStepSize;
+        this.stepSize = Math.max(minStepSize, Math.min(maxStepSize, initialStepSize));
+    }
+
+    public double getStepSize() {
+        return stepSize;
+    }
+
+    public double getPositionError(double error, double position) {
+        return Math.abs(error) / (positionTolerance + relativeTolerance * Math.abs(position));
+    }
+
+    public double getVelocityError(double error, double velocity) {
+        return Math.abs(error) / (velocityTolerance + relativeTolerance * Math.abs(velocity));
+    }
+
+    // errorNorm is the worst scaled error of the attempt made with stepSize and scales like stepSize^(order + 1).
+    // Returns whether the attempt is accepted and leaves the size for the next attempt in getStepSize. A step
+    // already at minStepSize is always accepted so the integration cannot stall.
+    public boolean adapt(double stepSize, double errorNorm, int order) {
+        boolean accepted = errorNorm <= 1.0 || stepSize <= minStepSize;
+
+        double factor = errorNorm == 0 ? MAX_FACTOR : SAFETY * Math.pow(errorNorm, -1.0 / (order + 1));
+        factor = Math.max(MIN_FACTOR, Math.min(accepted ? MAX_FACTOR : 1.0, factor));
+        this.stepSize = Math.max(minStepSize, Math.min(maxStepSize, stepSize * factor));
+
+        if (accepted) {
+            acceptedSteps++;
+        } else {
+            rejectedSteps++;
+        }
+        return accepted;
+    }
+
+    public long getAcceptedSteps() {
+        return acceptedSteps;
+    }
+
+    public long getRejectedSteps() {
+        return rejectedSteps;
+    }
+
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(stepSize);
+        output.writeLong(acceptedSteps);
+        output.writeLong(rejectedSteps);
+    }
+
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        stepSize = input.readDouble();
+        acceptedSteps = input.readLong();
+        rejectedSteps = input.readLong();
+    }
+}
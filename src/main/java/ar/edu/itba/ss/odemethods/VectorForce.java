@@ -0,0 +1,7 @@
+package ar.edu.itba.ss.odemethods;
+
+@FunctionalInterface
+public interface VectorForce {
+    // writes every component of the force at state (r, v) into force
+    void apply(double[] r, double[] v, double[] force);
+}
@@ -0,0 +1,180 @@
+package ar.edu.itba.ss.odemethods;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class VectorGearPredictorCorrector implements AdaptiveVectorOdeMethod {
+    private static final int ORDER = 6;
+    private static final double[] FACTORIALS = {1.0, 1.0, 2.0, 6.0, 24.0, 120.0};
+
+    private final VectorForce force;
+    private final double mass;
+    private final int dimension;
+    // only components below activeDimension are integrated; the rest are frozen
+    private int activeDimension;
+    // state[k * dimension + i] holds the k-th time derivative of component i
+    private final double[] state;
+    private final double[] predictedPosition;
+    private final double[] predictedVelocity;
+    private final double[] predictedForce;
+    private final double[] alpha;
+    // copy of state taken before an adaptive attempt so a rejected step can be undone
+    private final double[] savedState;
+
+    public VectorGearPredictorCorrector(double[] r0, double[] v0, double[] initialR3, double[] initialR4, double[] initialR5, VectorForce force, double mass, boolean forceIsVelocityDependent) {
+        this.force = force;
+        this.mass = mass;
+        this.dimension = r0.length;
+        this.activeDimension = dimension;
+        this.state = new double[ORDER * dimension];
+        this.predictedPosition = new double[dimension];
+        this.predictedVelocity = new double[dimension];
+        this.predictedForce = new double[dimension];
+        this.savedState = new double[ORDER * dimension];
+
+        force.apply(r0, v0, predictedForce);
+
+        for (int i = 0; i < dimension; i++) {
+            state[i] = r0[i];
+            state[dimension + i] = v0[i];
+            state[2 * dimension + i] = predictedForce[i] / mass;
+            state[3 * dimension + i] = initialR3[i];
+            state[4 * dimension + i] = initialR4[i];
+            state[5 * dimension + i] = initialR5[i];
+        }
+
+        this.alpha = new double[]{
+                forceIsVelocityDependent ? 3.0 / 16.0 : 3.0 / 20.0,
+                251.0 / 360.0,
+                1.0,
+                11.0 / 18.0,
+                1.0 / 6.0,
+                1.0 / 60.0
+        };
+    }
+
+    public VectorGearPredictorCorrector(double[] r0, double[] v0, VectorForce force, double mass, boolean forceIsVelocityDependent) {
+        this(r0, v0, new double[r0.length], new double[r0.length], new double[r0.length], force, mass, forceIsVelocityDependent);
+    }
+
+    @Override
+    public void step(double stepSize) {
+        advance(stepSize, null);
+    }
+
+    // The derivatives are stored unscaled (not as h^k / k! Nordsieck terms), so a new step size needs no
+    // rescaling of the higher derivatives; a rejected attempt is simply rolled back.
+    @Override
+    public double adaptiveStep(StepSizeController controller, double maxStepSize) {
+        while (true) {
+            double stepSize = Math.min(controller.getStepSize(), maxStepSize);
+            System.arraycopy(state, 0, savedState, 0, state.length);
+
+            double errorNorm = advance(stepSize, controller);
+            if (controller.adapt(stepSize, errorNorm, ORDER - 1)) {
+                return stepSize;
+            }
+
+            System.arraycopy(savedState, 0, state, 0, state.length);
+        }
+    }
+
+    // the corrector delta is the predictor's local error, so the position and velocity corrections double as
+    // the error estimate that the controller scores
+    private double advance(double stepSize, StepSizeController controller) {
+        predict(stepSize);
+
+        for (int i = 0; i < activeDimension; i++) {
+            predictedPosition[i] = state[i];
+            predictedVelocity[i] = state[dimension + i];
+        }
+
+        force.apply(predictedPosition, predictedVelocity, predictedForce);
+
+        double deltaToR2 = stepSize * stepSize / 2.0;
+        double errorNorm = 0;
+
+        for (int i = 0; i < activeDimension; i++) {
+            double deltaAcc = predictedForce[i] / mass - state[2 * dimension + i];
+            double deltaR2 = deltaAcc * deltaToR2;
+
+            if (controller != null) {
+                errorNorm = Math.max(errorNorm, controller.getPositionError(alpha[0] * deltaR2, state[i]));
+                errorNorm = Math.max(errorNorm, controller.getVelocityError(alpha[1] * deltaR2 / stepSize, state[dimension + i]));
+            }
+
+            double scale = 1.0;
+            for (int k = 0; k < ORDER; k++) {
+                state[k * dimension + i] += alpha[k] * deltaR2 * FACTORIALS[k] / scale;
+                scale *= stepSize;
+            }
+        }
+
+        return errorNorm;
+    }
+
+    // in-place Taylor expansion; lower orders go first so they still read the previous higher derivatives
+    private void predict(double stepSize) {
+        for (int i = 0; i < activeDimension; i++) {
+            for (int k = 0; k < ORDER - 1; k++) {
+                double value = state[k * dimension + i];
+                double term = 1.0;
+                for (int j = k + 1; j < ORDER; j++) {
+                    term *= stepSize / (j - k);
+                    value += state[j * dimension + i] * term;
+                }
+                state[k * dimension + i] = value;
+            }
+        }
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getActiveDimension() {
+        return activeDimension;
+    }
+
+    public void setActiveDimension(int activeDimension) {
+        if (activeDimension < 0 || activeDimension > dimension) {
+            throw new IllegalArgumentException("Active dimension must be between 0 and " + dimension);
+        }
+        this.activeDimension = activeDimension;
+    }
+
+    public void swapComponents(int i, int j) {
+        for (int k = 0; k < ORDER; k++) {
+            double value = state[k * dimension + i];
+            state[k * dimension + i] = state[k * dimension + j];
+            state[k * dimension + j] = value;
+        }
+    }
+
+    @Override
+    public double getPosition(int component) {
+        return state[component];
+    }
+
+    @Override
+    public double getVelocity(int component) {
+        return state[dimension + component];
+    }
+
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeInt(activeDimension);
+        for (double value : state) {
+            output.writeDouble(value);
+        }
+    }
+
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        setActiveDimension(input.readInt());
+        for (int i = 0; i < state.length; i++) {
+            state[i] = input.readDouble();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ar.edu.itba.ss.odemethods;
+
+public interface VectorOdeMethod extends Checkpointable {
+    void step(double stepSize);
+
+    double getPosition(int component);
+
+    double getVelocity(int component);
+}
@@ -1,9 +1,11 @@
 package ar.edu.itba.ss.odemethods;
 
-import java.util.function.BiFunction;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class VerletMethod implements OdeMethod{
-    private final BiFunction<Double, Double, Double> force;
+    private final Force force;
     private final double mass;
     private double previousPreviousPosition;
     private double previousPosition;
@@ -11,7 +13,7 @@ public class VerletMethod implements OdeMethod{
     private double previousVelocity;
     private double currentVelocity;
 
-    public VerletMethod(double r0, double v0, BiFunction<Double, Double, Double> force, double mass) {
+    public VerletMethod(double r0, double v0, Force force, double mass) {
         this.force = force;
         this.mass = mass;
         this.currentPosition = r0;
@@ -41,23 +43,38 @@ public class VerletMethod implements OdeMethod{
         return nextVelocity;
     }
 
-    public double[] solve(int steps, double stepSize) {
+    @Override
+    public double getPosition() {
+        return currentPosition;
+    }
+
+    @Override
+    public double getVelocity() {
+        return currentVelocity;
+    }
+
+    @Override
+    public void initialize(double stepSize) {
         // use Euler's method as an approximation to get r(-dt)
         EulerMethod euler = new EulerMethod(currentPosition, currentVelocity, force, mass);
         this.previousPosition = euler.getNextPosition(-stepSize);
+    }
 
-        euler.update(this.previousPosition, euler.getNextVelocity(-stepSize));
-
-        double[] positions = new double[steps];
-
-        positions[0] = this.currentPosition;
-
-        for (int i = 1; i < steps; i++) {
-            positions[i] = getNextPosition(stepSize);
-            getNextVelocity(stepSize);
-        }
-
-        return positions;
+    @Override
+    public void saveState(DataOutput output) throws IOException {
+        output.writeDouble(previousPreviousPosition);
+        output.writeDouble(previousPosition);
+        output.writeDouble(currentPosition);
+        output.writeDouble(previousVelocity);
+        output.writeDouble(currentVelocity);
     }
 
+    @Override
+    public void restoreState(DataInput input) throws IOException {
+        previousPreviousPosition = input.readDouble();
+        previousPosition = input.readDouble();
+        currentPosition = input.readDouble();
+        previousVelocity = input.readDouble();
+        currentVelocity = input.readDouble();
+    }
 }
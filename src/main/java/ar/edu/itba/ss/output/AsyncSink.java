@@ -0,0 +1,166 @@
+package ar.edu.itba.ss.output;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-producer/single-consumer ring of preallocated row slots drained by a background thread into the
+// delegate sink. The producer only copies the row into a slot; all formatting and I/O happens on the writer thread.
+public class AsyncSink implements Sink {
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(AsyncSink.class, "head", long.class);
+            TAIL = lookup.findVarHandle(AsyncSink.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Sink delegate;
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final int rowWidth;
+    private final double[] slots;
+    private final Thread writer;
+
+    // next slot to read, advanced by the writer thread only
+    private volatile long head;
+    // next slot to fill, advanced by the producer only
+    private volatile long tail;
+    private volatile boolean closed;
+    // whatever stopped the writer thread; write, flush and close rethrow it instead of waiting on a dead drain
+    private volatile Throwable failure;
+
+    private long droppedRows;
+    private int maxQueueDepth;
+    private long stallNanos;
+
+    public AsyncSink(Sink delegate, int rowWidth, int capacity, OverflowPolicy policy) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.rowWidth = rowWidth;
+        this.slots = new double[capacity * rowWidth];
+        this.writer = new Thread(this::drain, "async-sink-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void write(double[] row) throws IOException {
+        checkFailure();
+
+        long currentTail = tail;
+        int depth = (int) (currentTail - (long) HEAD.getAcquire(this));
+
+        if (depth == capacity) {
+            if (policy == OverflowPolicy.DROP) {
+                droppedRows++;
+                return;
+            }
+            long stallStart = System.nanoTime();
+            while ((depth = (int) (currentTail - (long) HEAD.getAcquire(this))) == capacity) {
+                checkFailure();
+                Thread.onSpinWait();
+            }
+            stallNanos += System.nanoTime() - stallStart;
+        }
+
+        maxQueueDepth = Math.max(maxQueueDepth, depth + 1);
+        System.arraycopy(row, 0, slots, (int) (currentTail & (capacity - 1)) * rowWidth, rowWidth);
+        TAIL.setRelease(this, currentTail + 1);
+    }
+
+    private void drain() {
+        double[] row = new double[rowWidth];
+        long currentHead = head;
+
+        try {
+            while (true) {
+                long available = (long) TAIL.getAcquire(this);
+                if (currentHead == available) {
+                    if (closed && currentHead == (long) TAIL.getAcquire(this)) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                while (currentHead < available) {
+                    System.arraycopy(slots, (int) (currentHead & (capacity - 1)) * rowWidth, row, 0, rowWidth);
+                    delegate.write(row);
+                    currentHead++;
+                    HEAD.setRelease(this, currentHead);
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause instanceof IOException e) {
+            throw e;
+        }
+        if (cause != null) {
+            throw new IOException("Async sink writer failed", cause);
+        }
+    }
+
+    public int getQueueDepth() {
+        return (int) (tail - head);
+    }
+
+    // producer-side counters; read them from the producing thread or after close
+    public SinkStatistics getStatistics() {
+        return new SinkStatistics(head, droppedRows, maxQueueDepth, stallNanos);
+    }
+
+    // waits for the writer thread to drain the queue; the delegate is idle afterwards, so it is flushed from here
+    @Override
+    public void flush() throws IOException {
+        while ((long) HEAD.getAcquire(this) != tail) {
+            checkFailure();
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+        checkFailure();
+        delegate.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        delegate.sync();
+    }
+
+    // bytes the delegate has written, which lags the rows accepted by write
+    @Override
+    public long getBytesWritten() {
+        return delegate.getBytesWritten();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing queued rows", e);
+        } finally {
+            delegate.close();
+        }
+        checkFailure();
+    }
+}
@@ -0,0 +1,56 @@
+package ar.edu.itba.ss.output;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class DelimitedTextSink implements Sink {
+    private final FileOutputStream file;
+    private final CountingOutputStream output;
+    private final Writer writer;
+    private final String delimiter;
+
+    public DelimitedTextSink(String fileName, String header, String delimiter) throws IOException {
+        this.file = new FileOutputStream(fileName);
+        this.output = new CountingOutputStream(file);
+        this.writer = new BufferedWriter(new OutputStreamWriter(output), 1 << 16);
+        this.delimiter = delimiter;
+        if (header != null) {
+            writer.write(header + "\n");
+        }
+    }
+
+    @Override
+    public void write(double[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(delimiter);
+            }
+            writer.write(Double.toString(row[i]));
+        }
+        writer.write("\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        file.getChannel().force(true);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return output.getCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,8 @@
+package ar.edu.itba.ss.output;
+
+public enum OverflowPolicy {
+    // the producer waits for the writer thread to free a slot
+    BLOCK,
+    // the row is discarded and counted
+    DROP
+}
@@ -0,0 +1,18 @@
+package ar.edu.itba.ss.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface Sink extends Closeable {
+    // the row is only read during the call, so callers can reuse the same array
+    void write(double[] row) throws IOException;
+
+    // pushes every row written so far to the underlying file
+    void flush() throws IOException;
+
+    // flushes and then forces the underlying file to disk, so its length can be recorded as durable
+    void sync() throws IOException;
+
+    // bytes that have reached the underlying file so far; safe to call from any thread
+    long getBytesWritten();
+}
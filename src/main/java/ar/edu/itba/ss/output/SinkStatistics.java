@@ -0,0 +1,4 @@
+package ar.edu.itba.ss.output;
+
+public record SinkStatistics(long writtenRows, long droppedRows, int maxQueueDepth, long stallNanos) {
+}
@@ -0,0 +1,31 @@
+package ar.edu.itba.ss.output;
+
+import ar.edu.itba.ss.config.Configuration;
+
+public class Sinks {
+
+    private Sinks() {
+    }
+
+    // -DasyncOutput=true moves the delegate behind an AsyncSink sized by -DasyncCapacity and -DasyncPolicy
+    public static Sink fromProperties(Sink delegate, int rowWidth) {
+        return from(Configuration.fromSystemProperties(), delegate, rowWidth);
+    }
+
+    public static Sink from(Configuration configuration, Sink delegate, int rowWidth) {
+        if (!configuration.getBoolean("asyncOutput", false)) {
+            return delegate;
+        }
+        int capacity = configuration.getInt("asyncCapacity", 65536);
+        OverflowPolicy policy = OverflowPolicy.valueOf(configuration.getString("asyncPolicy", "block").toUpperCase());
+        return new AsyncSink(delegate, rowWidth, capacity, policy);
+    }
+
+    public static void printStatistics(Sink sink) {
+        if (sink instanceof AsyncSink asyncSink) {
+            SinkStatistics statistics = asyncSink.getStatistics();
+            System.out.println("Output rows: " + statistics.writtenRows() + ", dropped: " + statistics.droppedRows()
+                    + ", max queue depth: " + statistics.maxQueueDepth() + ", producer stall: " + statistics.stallNanos() / 1e6 + " ms");
+        }
+    }
+}
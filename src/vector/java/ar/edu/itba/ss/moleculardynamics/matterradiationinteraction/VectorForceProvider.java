@@ -0,0 +1,65 @@
+package ar.edu.itba.ss.moleculardynamics.matterradiationinteraction;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorForceProvider implements ForceProvider {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] charge;
+
+    VectorForceProvider(MatterParticles matterParticles) {
+        this.x = matterParticles.getXs();
+        this.y = matterParticles.getYs();
+        this.charge = matterParticles.getCharges();
+    }
+
+    @Override
+    public double getTotalElectrostaticForceAndPotential(double x, double y, double charge, double[] force) {
+        DoubleVector positionX = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector positionY = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector forceX = DoubleVector.zero(SPECIES);
+        DoubleVector forceY = DoubleVector.zero(SPECIES);
+        DoubleVector potential = DoubleVector.zero(SPECIES);
+
+        int i = 0;
+        int upperBound = SPECIES.loopBound(this.x.length);
+
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector deltaX = positionX.sub(DoubleVector.fromArray(SPECIES, this.x, i));
+            DoubleVector deltaY = positionY.sub(DoubleVector.fromArray(SPECIES, this.y, i));
+            DoubleVector squaredDistance = deltaX.fma(deltaX, deltaY.mul(deltaY));
+            DoubleVector inverseDistance = one.div(squaredDistance.lanewise(VectorOperators.SQRT));
+            DoubleVector chargeOverDistance = DoubleVector.fromArray(SPECIES, this.charge, i).mul(inverseDistance);
+            DoubleVector magnitude = chargeOverDistance.mul(inverseDistance).mul(inverseDistance);
+            forceX = deltaX.fma(magnitude, forceX);
+            forceY = deltaY.fma(magnitude, forceY);
+            potential = potential.add(chargeOverDistance);
+        }
+
+        double sumX = forceX.reduceLanes(VectorOperators.ADD);
+        double sumY = forceY.reduceLanes(VectorOperators.ADD);
+        double sumPotential = potential.reduceLanes(VectorOperators.ADD);
+
+        for (; i < this.x.length; i++) {
+            double deltaX = x - this.x[i];
+            double deltaY = y - this.y[i];
+            double inverseDistance = 1.0 / Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+            double chargeOverDistance = this.charge[i] * inverseDistance;
+            double magnitude = chargeOverDistance * inverseDistance * inverseDistance;
+            sumX += deltaX * magnitude;
+            sumY += deltaY * magnitude;
+            sumPotential += chargeOverDistance;
+        }
+
+        double factor = Constants.COULOMB_CONSTANT * charge;
+        force[0] = sumX * factor;
+        force[1] = sumY * factor;
+
+        return sumPotential * factor;
+    }
+}